@@ -0,0 +1,271 @@
+package rpg;
+
+import java.util.Arrays;
+
+/**
+ * A layer of one bit per tile, such as the obstacles or the visited tiles of a map. Each row is
+ * stored as longs of 64 tiles, so that the bulk operations (flood fill, neighbourhoods, counts)
+ * handle 64 tiles per instruction instead of one.
+ */
+public class Bitboard {
+  private final int size;
+  private final int wordsPerRow;
+  // The bits past the last column of a row, always clear
+  private final long lastWordMask;
+  private final long[] words;
+
+  /**
+   * Constructs an empty layer.
+   *
+   * @param size the width and height of the map
+   */
+  public Bitboard(int size) {
+    this.size = size;
+    this.wordsPerRow = (size + 63) >>> 6;
+    this.lastWordMask = size % 64 == 0 ? -1L : (1L << (size % 64)) - 1;
+    this.words = new long[size * wordsPerRow];
+  }
+
+  /**
+   * Gets the size of the layer.
+   *
+   * @return the width and height of the map
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Checks if the bit of a tile is set.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @return true if the bit is set, false otherwise
+   */
+  public boolean get(int x, int y) {
+    return (words[x * wordsPerRow + (y >>> 6)] & 1L << y) != 0;
+  }
+
+  /**
+   * Sets or clears the bit of a tile.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @param value true to set the bit, false to clear it
+   */
+  public void set(int x, int y, boolean value) {
+    int index = x * wordsPerRow + (y >>> 6);
+    if (value) {
+      words[index] |= 1L << y;
+    } else {
+      words[index] &= ~(1L << y);
+    }
+  }
+
+  /** Clears every bit. */
+  public void clear() {
+    Arrays.fill(words, 0L);
+  }
+
+  /**
+   * Copies the bits of another layer of the same size.
+   *
+   * @param other the layer to copy
+   */
+  public void copyFrom(Bitboard other) {
+    System.arraycopy(other.words, 0, words, 0, words.length);
+  }
+
+  /**
+   * Computes the complement of the layer, such as the passable tiles from the obstacles.
+   *
+   * @return a new layer with every bit of the map flipped
+   */
+  public Bitboard complement() {
+    Bitboard result = new Bitboard(size);
+    for (int i = 0; i < words.length; ++i) {
+      result.words[i] = ~words[i];
+    }
+    for (int x = 0; x < size; ++x) {
+      result.words[x * wordsPerRow + wordsPerRow - 1] &= lastWordMask;
+    }
+    return result;
+  }
+
+  /**
+   * Counts the set bits.
+   *
+   * @return the number of set tiles
+   */
+  public int count() {
+    int count = 0;
+    for (long word : words) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  /**
+   * Counts the set bits in a rectangle of tiles, masking the words at its left and right edges.
+   *
+   * @param x0 the first row, inclusive
+   * @param y0 the first column, inclusive
+   * @param x1 the last row, exclusive
+   * @param y1 the last column, exclusive
+   * @return the number of set tiles in the rectangle
+   */
+  public int countRegion(int x0, int y0, int x1, int y1) {
+    return countRegion(x0, y0, x1, y1, null);
+  }
+
+  /**
+   * Counts the tiles set in both this layer and a mask in a rectangle of tiles, such as the
+   * obstacles among the explored tiles.
+   *
+   * @param x0 the first row, inclusive
+   * @param y0 the first column, inclusive
+   * @param x1 the last row, exclusive
+   * @param y1 the last column, exclusive
+   * @param mask the layer of the same size selecting the counted tiles, null to count them all
+   * @return the number of tiles set in both layers in the rectangle
+   */
+  public int countRegion(int x0, int y0, int x1, int y1, Bitboard mask) {
+    if (x0 >= x1 || y0 >= y1) {
+      return 0;
+    }
+    int firstWord = y0 >>> 6;
+    int lastWord = (y1 - 1) >>> 6;
+    long firstMask = -1L << y0;
+    long lastMask = -1L >>> (63 - ((y1 - 1) & 63));
+    int count = 0;
+    for (int x = x0; x < x1; ++x) {
+      int row = x * wordsPerRow;
+      if (firstWord == lastWord) {
+        count += Long.bitCount(maskedWord(row + firstWord, mask) & firstMask & lastMask);
+        continue;
+      }
+      count += Long.bitCount(maskedWord(row + firstWord, mask) & firstMask);
+      for (int w = firstWord + 1; w < lastWord; ++w) {
+        count += Long.bitCount(maskedWord(row + w, mask));
+      }
+      count += Long.bitCount(maskedWord(row + lastWord, mask) & lastMask);
+    }
+    return count;
+  }
+
+  private long maskedWord(int index, Bitboard mask) {
+    return mask == null ? words[index] : words[index] & mask.words[index];
+  }
+
+  /**
+   * Counts the set bits of every block of tiles, such as the obstacle density of a minimap pixel.
+   *
+   * @param blockSize the width and height of a block in tiles
+   * @return the counts of the blocks, indexed by blockX * blocksPerRow + blockY
+   */
+  public int[] densities(int blockSize) {
+    int blocks = (size + blockSize - 1) / blockSize;
+    int[] counts = new int[blocks * blocks];
+    for (int bx = 0; bx < blocks; ++bx) {
+      for (int by = 0; by < blocks; ++by) {
+        counts[bx * blocks + by] =
+            countRegion(
+                bx * blockSize,
+                by * blockSize,
+                Math.min(size, (bx + 1) * blockSize),
+                Math.min(size, (by + 1) * blockSize));
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Computes the 4-neighbourhood of the set tiles: every set tile and the tiles next to one.
+   *
+   * @param destination the layer receiving the neighbourhood, may be this layer
+   */
+  public void dilate(Bitboard destination) {
+    long[] result = new long[words.length];
+    for (int x = 0; x < size; ++x) {
+      int row = x * wordsPerRow;
+      for (int w = 0; w < wordsPerRow; ++w) {
+        long word = words[row + w];
+        // Shift along the row, carrying the edge bits over from the neighbouring words
+        long left = (word << 1) | (w > 0 ? words[row + w - 1] >>> 63 : 0L);
+        long right = (word >>> 1) | (w < wordsPerRow - 1 ? words[row + w + 1] << 63 : 0L);
+        long up = x > 0 ? words[row - wordsPerRow + w] : 0L;
+        long down = x < size - 1 ? words[row + wordsPerRow + w] : 0L;
+        result[row + w] = word | left | right | up | down;
+      }
+      result[row + wordsPerRow - 1] &= lastWordMask;
+    }
+    System.arraycopy(result, 0, destination.words, 0, words.length);
+  }
+
+  /**
+   * Fills the tiles reachable from a tile through the tiles set in a passable layer, moving in four
+   * directions. Each sweep closes the runs of passable tiles of a row with carry arithmetic, then
+   * spreads the reached tiles to the next row, until a down and an up sweep add nothing.
+   *
+   * @param passable the tiles that can be walked on
+   * @param x the x-coordinate of the first tile, reached even if not passable
+   * @param y the y-coordinate of the first tile
+   * @return the reachable tiles
+   */
+  public static Bitboard floodFill(Bitboard passable, int x, int y) {
+    Bitboard reached = new Bitboard(passable.size);
+    reached.set(x, y, true);
+    // The first tile counts as passable, the player stands on it
+    Bitboard open = new Bitboard(passable.size);
+    open.copyFrom(passable);
+    open.set(x, y, true);
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int row = 0; row < passable.size; ++row) {
+        changed |= reached.spreadRow(open, row, row - 1);
+      }
+      for (int row = passable.size - 1; row >= 0; --row) {
+        changed |= reached.spreadRow(open, row, row + 1);
+      }
+    }
+    return reached;
+  }
+
+  /**
+   * Spreads the reached tiles of a neighbouring row into a row, then along the passable runs of
+   * that row.
+   *
+   * @return true if a tile was reached
+   */
+  private boolean spreadRow(Bitboard open, int x, int fromX) {
+    int row = x * wordsPerRow;
+    boolean changed = false;
+    long carry = 0L;
+    // Spread towards higher columns, a run crossing a word boundary carries over
+    for (int w = 0; w < wordsPerRow; ++w) {
+      long passable = open.words[row + w];
+      long seeds = words[row + w] | (carry & passable);
+      if (fromX >= 0 && fromX < size) {
+        seeds |= words[fromX * wordsPerRow + w] & passable;
+      }
+      long filled = (((passable + seeds) ^ passable) & passable) | seeds;
+      carry = (filled >>> 63) & 1L;
+      changed |= filled != words[row + w];
+      words[row + w] = filled;
+    }
+    // Spread towards lower columns, the same arithmetic on reversed bits
+    carry = 0L;
+    for (int w = wordsPerRow - 1; w >= 0; --w) {
+      long passable = Long.reverse(open.words[row + w]);
+      long seeds = Long.reverse(words[row + w]) | (carry & passable);
+      long filled = (((passable + seeds) ^ passable) & passable) | seeds;
+      carry = (filled >>> 63) & 1L;
+      filled = Long.reverse(filled);
+      changed |= filled != words[row + w];
+      words[row + w] = filled;
+    }
+    return changed;
+  }
+}
@@ -0,0 +1,289 @@
+package rpg;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The field of view of the fog-of-war mode: the tiles the player sees within a radius, rocks and
+ * panels casting shadows, computed by recursive shadowcasting over eight octants.
+ *
+ * <p>Each octant lists its visible tiles, so that an update only touches the tiles whose visibility
+ * changed. Obstacles never change during a game, so the view is only updated when the player moves,
+ * and an octant is only cast again if the obstacles or the map border in its scan triangle differ
+ * between the two positions; otherwise its tiles are moved along with the player. Every tile ever
+ * seen is remembered in a bitboard layer.
+ */
+public class FieldOfView {
+  // Octant transforms from the scan coordinates to the map coordinates
+  private static final int[] XX = {1, 0, 0, -1, -1, 0, 0, 1};
+  private static final int[] XY = {0, 1, -1, 0, 0, -1, 1, 0};
+  private static final int[] YX = {0, 1, 1, 0, 0, -1, -1, 0};
+  private static final int[] YY = {1, 0, 0, 1, -1, 0, 0, -1};
+
+  private final RPGMap map;
+  private final int size;
+  private final int radius;
+  private final BitSet visible = new BitSet();
+  private final Bitboard explored;
+  private final BitSet wasVisible = new BitSet();
+  private final int[][] octantTiles = new int[8][];
+  private final int[] octantCounts = new int[8];
+  private boolean dirty;
+  private int[] changed = new int[64];
+  private int changedCount;
+  private int originX = -1;
+  private int originY = -1;
+  private int originTile = -1;
+  private int castX = -1;
+  private int castY = -1;
+
+  /**
+   * Constructs the field of view of a map, with no tile seen yet.
+   *
+   * @param map the map whose obstacles block the view
+   * @param radius the distance the player sees in tiles
+   */
+  public FieldOfView(RPGMap map, int radius) {
+    this.map = map;
+    this.size = map.getSize();
+    this.radius = radius;
+    this.explored = new Bitboard(size);
+    for (int octant = 0; octant < 8; ++octant) {
+      octantTiles[octant] = new int[16];
+    }
+  }
+
+  /**
+   * Gets the distance the player sees.
+   *
+   * @return the radius in tiles
+   */
+  public int getRadius() {
+    return radius;
+  }
+
+  /**
+   * Checks if a tile is currently visible.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @return true if the player sees the tile, false otherwise
+   */
+  public boolean isVisible(int x, int y) {
+    return visible.get(x * size + y);
+  }
+
+  /**
+   * Checks if a tile was ever visible.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @return true if the player has seen the tile, false otherwise
+   */
+  public boolean isExplored(int x, int y) {
+    return explored.get(x, y);
+  }
+
+  /**
+   * Gets the tiles ever visible, such as the mask of the minimap.
+   *
+   * @return the explored layer, updated in place
+   */
+  public Bitboard getExplored() {
+    return explored;
+  }
+
+  /**
+   * Moves the origin of the view, invalidating it if the player moved.
+   *
+   * @param x the x-coordinate of the player
+   * @param y the y-coordinate of the player
+   */
+  public void moveTo(int x, int y) {
+    if (x != originX || y != originY) {
+      originX = x;
+      originY = y;
+      dirty = true;
+    }
+  }
+
+  /**
+   * Updates the visible tiles after the player moved, only casting the octants whose surroundings
+   * changed. The tiles whose visibility changed are then listed by {@link #changedCount} and {@link
+   * #changedTile}.
+   */
+  public void update() {
+    changedCount = 0;
+    if (!dirty || originX < 0) {
+      return;
+    }
+    dirty = false;
+
+    // Hide every tile, remembering which ones were visible
+    if (originTile >= 0) {
+      hide(originTile);
+    }
+    for (int octant = 0; octant < 8; ++octant) {
+      for (int i = 0; i < octantCounts[octant]; ++i) {
+        hide(octantTiles[octant][i]);
+      }
+    }
+    // An octant seeing the same obstacles as from the last cast keeps its tiles, only shifted
+    int shift = (originX - castX) * size + originY - castY;
+    for (int octant = 0; octant < 8; ++octant) {
+      if (castX >= 0 && sameSurroundings(octant)) {
+        for (int i = 0; i < octantCounts[octant]; ++i) {
+          octantTiles[octant][i] += shift;
+        }
+      } else {
+        octantCounts[octant] = 0;
+        castLight(octant, 1, 1.0, 0.0);
+      }
+    }
+    castX = originX;
+    castY = originY;
+    // Show the tiles of every octant again, a tile still visible is not reported as changed
+    originTile = originX * size + originY;
+    show(originTile);
+    for (int octant = 0; octant < 8; ++octant) {
+      for (int i = 0; i < octantCounts[octant]; ++i) {
+        show(octantTiles[octant][i]);
+      }
+    }
+
+    // Only keep the tiles whose visibility actually changed
+    int count = changedCount;
+    changedCount = 0;
+    for (int i = 0; i < count; ++i) {
+      int tile = changed[i];
+      if (visible.get(tile) != wasVisible.get(tile)) {
+        changed[changedCount++] = tile;
+      }
+      wasVisible.clear(tile);
+    }
+  }
+
+  /**
+   * Gets the number of tiles whose visibility changed in the last update.
+   *
+   * @return the number of changed tiles
+   */
+  public int changedCount() {
+    return changedCount;
+  }
+
+  /**
+   * Gets a tile whose visibility changed in the last update.
+   *
+   * @param i the index of the changed tile, below {@link #changedCount}
+   * @return the tile index, x * size + y
+   */
+  public int changedTile(int i) {
+    return changed[i];
+  }
+
+  /**
+   * Scans the rows of an octant from a row on, between two slopes, recursing under each obstacle.
+   */
+  private void castLight(int octant, int row, double start, double end) {
+    if (start < end) {
+      return;
+    }
+    double newStart = 0.0;
+    for (int j = row; j <= radius; ++j) {
+      int dy = -j;
+      boolean blocked = false;
+      for (int dx = -j; dx <= 0; ++dx) {
+        double leftSlope = (dx - 0.5) / (dy + 0.5);
+        double rightSlope = (dx + 0.5) / (dy - 0.5);
+        if (start < rightSlope) {
+          continue;
+        } else if (end > leftSlope) {
+          break;
+        }
+
+        int x = originX + dx * XX[octant] + dy * XY[octant];
+        int y = originY + dx * YX[octant] + dy * YY[octant];
+        boolean inside = map.inBounds(x, y);
+        if (inside && dx * dx + dy * dy <= radius * radius) {
+          addTile(octant, x * size + y);
+        }
+
+        // Out of the map blocks the view like an obstacle
+        boolean opaque = !inside || map.isObstacle(x, y);
+        if (blocked) {
+          if (opaque) {
+            newStart = rightSlope;
+          } else {
+            blocked = false;
+            start = newStart;
+          }
+        } else if (opaque && j < radius) {
+          blocked = true;
+          castLight(octant, j + 1, start, leftSlope);
+          newStart = rightSlope;
+        }
+      }
+      if (blocked) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Checks if every tile of the scan triangle of an octant, beyond the radius included since it
+   * shapes the shadows, is alike around the origin and around the position of the last cast.
+   */
+  private boolean sameSurroundings(int octant) {
+    for (int j = 1; j <= radius; ++j) {
+      for (int dx = -j; dx <= 0; ++dx) {
+        int offsetX = dx * XX[octant] - j * XY[octant];
+        int offsetY = dx * YX[octant] - j * YY[octant];
+        if (cell(originX + offsetX, originY + offsetY) != cell(castX + offsetX, castY + offsetY)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Classifies a tile for the view: -1 out of the map, 1 for an obstacle, 0 otherwise. */
+  private int cell(int x, int y) {
+    if (!map.inBounds(x, y)) {
+      return -1;
+    }
+    return map.isObstacle(x, y) ? 1 : 0;
+  }
+
+  private void addTile(int octant, int tile) {
+    if (octantCounts[octant] == octantTiles[octant].length) {
+      octantTiles[octant] = Arrays.copyOf(octantTiles[octant], octantCounts[octant] << 1);
+    }
+    octantTiles[octant][octantCounts[octant]++] = tile;
+  }
+
+  private void hide(int tile) {
+    if (visible.get(tile)) {
+      visible.clear(tile);
+      wasVisible.set(tile);
+      addChanged(tile);
+    }
+  }
+
+  private void show(int tile) {
+    if (!visible.get(tile)) {
+      visible.set(tile);
+      explored.set(tile / size, tile % size, true);
+      if (!wasVisible.get(tile)) {
+        addChanged(tile);
+      }
+    }
+  }
+
+  private void addChanged(int tile) {
+    if (changedCount == changed.length) {
+      changed = Arrays.copyOf(changed, changedCount << 1);
+    }
+    changed[changedCount++] = tile;
+  }
+}
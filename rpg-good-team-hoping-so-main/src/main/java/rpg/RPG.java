@@ -1,7 +1,14 @@
 package rpg;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
+import rpg.endless.EndlessGame;
+import rpg.stats.CareerStats;
+import rpg.telemetry.TelemetrySink;
+import rpg.ui.DevReloader;
 import rpg.ui.RPGMenuView;
 import rpg.ui.RPGView;
 
@@ -24,18 +31,106 @@ public class RPG extends Application {
    */
   @Override
   public void start(Stage primaryStage) {
+    int fogRadius = 0;
+    int players = 1;
+    boolean endless = false;
+    String statsFile = CareerStats.DEFAULT_FILE;
+    for (String arg : getParameters().getRaw()) {
+      // Dev mode reloads styles and sprites from the sources: --dev or --dev=<resources directory>
+      if (arg.equals("--dev") || arg.startsWith("--dev=")) {
+        String resources = arg.startsWith("--dev=") ? arg.substring(6) : "src/main/resources";
+        DevReloader.start(Paths.get(resources));
+      }
+      // Telemetry logs every move for balancing: --telemetry or --telemetry=<directory>
+      if (arg.equals("--telemetry") || arg.startsWith("--telemetry=")) {
+        String directory = arg.startsWith("--telemetry=") ? arg.substring(12) : "telemetry";
+        try {
+          TelemetrySink.start(Paths.get(directory));
+        } catch (IOException e) {
+          System.out.println("Telemetry: cannot create " + directory + ", " + e.getMessage());
+        }
+      }
+      // Fog-of-war mode hides what the player cannot see: --fog or --fog=<radius>
+      if (arg.equals("--fog") || arg.startsWith("--fog=")) {
+        fogRadius = arg.startsWith("--fog=") ? parseCount(arg.substring(6), RPGModel.SIZE) : 3;
+      }
+      // Career statistics are kept in a file: --stats=<file>, career.stats by default
+      if (arg.startsWith("--stats=")) {
+        statsFile = arg.substring(8);
+      }
+      // Endless mode streams new terrain in as the player runs, alone and without fog: --endless
+      if (arg.equals("--endless")) {
+        endless = true;
+      }
+      // Split-screen mode hosts several players in one window: --split=<players>
+      if (arg.startsWith("--split=")) {
+        players = parseCount(arg.substring(8), SplitScreen.MAX_PLAYERS);
+      }
+    }
+    if (fogRadius < 0 || players < 0) {
+      System.out.println(
+          "Usage: --fog=<radius from 1 to "
+              + RPGModel.SIZE
+              + ">, --split=<players from 1 to "
+              + SplitScreen.MAX_PLAYERS
+              + ">");
+      Platform.exit();
+      return;
+    }
+    if (endless && (players > 1 || fogRadius > 0)) {
+      // The endless board is a window of the world redrawn around one player, with no field of view
+      System.out.println("--endless cannot be combined with --split or --fog");
+      Platform.exit();
+      return;
+    }
+    CareerStats.load(Paths.get(statsFile));
+
+    if (players > 1) {
+      // Every player gets its own session, the first one starts the rounds from the menu
+      SplitScreen splitScreen = new SplitScreen(players, System.nanoTime(), fogRadius);
+      new RPGMenuView(primaryStage, splitScreen.getLeader()).display(false, false);
+      return;
+    }
+
     // Create null instances of the Model and Game View for the controller
     RPGModel model = new RPGModel();
+    model.setFogRadius(fogRadius);
     RPGView view = new RPGView(null, null, null);
 
     // Create an instance of RPGController with the model and view
     RPGController controller = new RPGController(model, view);
     // Set the controller to the model so it is not null
     model.setController(controller);
+    if (endless) {
+      // The menu starts endless runs instead of games on the fixed board
+      controller.setHost(new EndlessGame(controller, System.nanoTime()));
+    }
 
     // Create an instance of RPGMenuView with the primaryStage and controller
     RPGMenuView menuView = new RPGMenuView(primaryStage, controller);
     // Display the menuView with initial values for gameWon and menuDisplayed set to false
     menuView.display(false, false);
   }
+
+  /**
+   * Parses the number of an argument.
+   *
+   * @param value the text after the equals sign
+   * @param max the largest accepted number
+   * @return the number, or -1 if it is not a number from 1 to max
+   */
+  private static int parseCount(String value, int max) {
+    try {
+      int count = Integer.parseInt(value);
+      return count >= 1 && count <= max ? count : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** The stop method called by the JavaFX runtime, writing the last telemetry records. */
+  @Override
+  public void stop() {
+    TelemetrySink.get().close();
+  }
 }
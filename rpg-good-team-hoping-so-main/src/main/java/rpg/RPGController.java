@@ -4,6 +4,8 @@ import javafx.geometry.Pos;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.TilePane;
 import javafx.stage.Stage;
+import rpg.stats.CareerStats;
+import rpg.telemetry.TelemetrySink;
 import rpg.ui.RPGMenuView;
 import rpg.ui.RPGView;
 
@@ -12,7 +14,10 @@ public class RPGController {
   private RPGModel model;
   private RPGView view;
   private TilePane tiles;
-  public boolean menuDisplayed = true;
+  private Stage stage;
+  private SessionHost host;
+  private double volume = 1.0;
+  private boolean menuDisplayed = true;
 
   /**
    * Constructs an RPGController object with the specified model and view.
@@ -32,8 +37,40 @@ public class RPGController {
    * @param stage the Stage representing the game window
    */
   public void initialize(Stage stage) {
+    startSession();
+
+    // Set up the game scene and display it on the stage
+    this.stage = stage;
+    view.setupGameScene(stage);
+  }
+
+  /**
+   * Starts a game from the menu: a single game on the stage, or a new round of the sessions of the
+   * host.
+   *
+   * @param stage the Stage of the menu
+   */
+  public void startGame(Stage stage) {
+    if (host != null) {
+      host.start(stage);
+    } else {
+      initialize(stage);
+    }
+  }
+
+  /**
+   * Starts a new game of this session without displaying it: generates the map, starts the timer
+   * and builds the view, whose root the caller places in a scene.
+   */
+  public void startSession() {
     menuDisplayed = false;
 
+    // Generate the map of the new game, rated in the background for the HUD
+    model.newMap();
+    // Place the player before the timer starts, the first history keyframe holds its position
+    model.resetPosition();
+    model.rateMap();
+
     // Setup the timer in the model
     setupTimer();
 
@@ -51,29 +88,43 @@ public class RPGController {
     view.initialize();
 
     // Add the initial player position on the view with the player image
-    model.resetPosition();
     view.updatePlayerPosition(model.getX(), model.getY());
-
-    // Set up the game scene and display it on the stage
-    view.setupGameScene(stage);
   }
 
   private void setupTimer() {
     model.startTimer(this::updateTimer);
-    int initialTimerSeconds = model.timerSeconds();
-    view.setTimerText(formatTimerText(initialTimerSeconds), false);
   }
 
-  /** Redirects the user to the main menu. */
+  /** Redirects the user to the main menu, or hands the end of the session to its host. */
   public void goToMenu(boolean gamePlayed, boolean gameWon) {
-    // Stop the music
-    view.stopMusic();
+    // A session ends once, even if the timer and a fart both end it
+    if (menuDisplayed) {
+      return;
+    }
+    menuDisplayed = true;
+    // Log the end of the session, the records reach the disk once the batch is full or on exit
+    model.recordTelemetry(
+        TelemetrySink.END, gameWon ? TelemetrySink.WON : gamePlayed ? 0 : TelemetrySink.ABANDONED);
+    // Fold the game into the career statistics of the menu
+    if (gamePlayed) {
+      CareerStats.get()
+          .recordGame(
+              gameWon,
+              model.timerSeconds(),
+              model.getMap().getSeed(),
+              model.getSize(),
+              model.getBumps());
+    }
+    // Stop the animations, the menu switches the music
+    view.stopAnimations();
     // Stop the timer game logic
     model.stopTimer();
-    // Get the current stage from the tiles and its scene, then cast it to a Stage object
-    Stage currentStage = (Stage) tiles.getScene().getWindow();
-    // Close the game window
-    currentStage.close();
+    if (host != null) {
+      host.sessionEnded(this, gamePlayed, gameWon);
+      return;
+    }
+    // Close the game window of this session
+    stage.close();
 
     // Create a new stage for the main menu
     Stage primaryStage = new Stage();
@@ -84,48 +135,77 @@ public class RPGController {
   }
 
   /**
-   * Formats the timer value into a string representation.
+   * Checks if the session shows the menu instead of a running game.
+   *
+   * @return true if no game is running, false otherwise
+   */
+  public boolean isMenuDisplayed() {
+    return menuDisplayed;
+  }
+
+  /**
+   * Sets the host of the session, which then handles its start and end.
+   *
+   * @param host the host of the session, or null for a game in its own window
+   */
+  public void setHost(SessionHost host) {
+    this.host = host;
+  }
+
+  /**
+   * Gets the view of the current game.
+   *
+   * @return the RPGView object
+   */
+  public RPGView getView() {
+    return view;
+  }
+
+  /**
+   * Gets the volume of the sounds and music of the session.
    *
-   * @param seconds the remaining seconds of the timer
-   * @return the formatted timer text
+   * @return the volume from 0 to 1
    */
-  private String formatTimerText(int seconds) {
-    int minutes = seconds / 60;
-    int remainingSeconds = seconds % 60;
-    return String.format("%02d:%02d", minutes, remainingSeconds);
+  public double getVolume() {
+    return volume;
+  }
+
+  /**
+   * Sets the volume of the sounds and music of the session, so that only one of several sessions
+   * can be heard.
+   *
+   * @param volume the volume from 0 to 1
+   */
+  public void setVolume(double volume) {
+    this.volume = volume;
   }
 
   /** Updates the timer and performs game logic based on the remaining timer seconds. */
   private void updateTimer() {
+    model.recordTelemetry(TelemetrySink.TICK, 0);
     int timerSeconds = model.timerSeconds();
     timerSeconds--;
 
-    if (timerSeconds <= 0) {
+    if (RPGRules.isTimeUp(timerSeconds)) {
       if (!menuDisplayed) {
         // Redirect the user to the menu if the game is not already displaying the menu
         goToMenu(true, false);
       }
       model.stopTimer();
     } else {
-      // Update the timer label in the view
-      view.setTimerText(formatTimerText(timerSeconds), (timerSeconds <= 5));
-
-      // Perform game logic based on the remaining timer seconds
+      // Perform game logic based on the remaining timer seconds, the view observes the model
       if (timerSeconds >= 15 && model.getPlayerState() > 0) {
         // Reset the player state to 0 if the timer is above or equal to 30 seconds
-        view.updatePlayerState(0);
         model.setPlayerState(0);
       } else if ((timerSeconds <= 30 && model.getPlayerState() == 0)
           || (timerSeconds <= 10 && timerSeconds > 5) && model.getPlayerState() == 2) {
         // Update the player state to 1 if the timer is below or equal to 30 seconds and above 15
         // seconds,
         // or if the player state is currently 0
-        view.updatePlayerState(1);
         model.setPlayerState(1);
       } else if (timerSeconds <= 5 && model.getPlayerState() == 1) {
         // Update the player state to 2 if the timer is below or equal to 5 seconds and the player
         // state is 1
-        view.updatePlayerState(2);
         model.setPlayerState(2);
       }
     }
@@ -140,15 +220,6 @@ public class RPGController {
     return model;
   }
 
-  /**
-   * Notifies the view to update the cooldown progress.
-   *
-   * @param cooldownProgress the progress of the cooldown
-   */
-  public void fartCooldown(double cooldownProgress) {
-    view.cooldownProgress(cooldownProgress);
-  }
-
   /**
    * Checks if there is an obstacle at the specified position.
    *
@@ -160,9 +231,9 @@ public class RPGController {
     return view.hasObstacleAt(x, y);
   }
 
-  /** Sets the timer to a specific duration of 10 seconds when the player takes drugs. */
+  /** Adds the drug bonus to the timer when the player takes drugs. */
   public void takeDrugs() {
-    model.timerSeconds(3);
+    model.takeDrug();
   }
 
   /**
@@ -181,4 +252,14 @@ public class RPGController {
       return false;
     }
   }
+
+  /**
+   * Notifies the view that a rewind restored a tile.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   */
+  public void tileRestored(int x, int y) {
+    view.redrawTile(x, y);
+  }
 }
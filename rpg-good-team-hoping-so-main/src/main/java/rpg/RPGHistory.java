@@ -0,0 +1,245 @@
+package rpg;
+
+/**
+ * Records the changes of the game state in a fixed-size ring buffer, so that the game can be
+ * rewound tick by tick.
+ *
+ * <p>Each record is a single long holding a record type and the value a field had before it
+ * changed, which makes the buffer an undo log. Every timer tick starts with a marker record, and
+ * every K-th marker is a keyframe holding the whole player state. Rewinding undoes the records back
+ * to the requested marker, so it costs time proportional to the distance rewound, and memory never
+ * grows: the oldest records are overwritten once the buffer is full.
+ */
+public class RPGHistory {
+  private static final int POSITION = 1;
+  private static final int TIMER = 2;
+  private static final int STATE = 3;
+  private static final int COOLDOWN = 4;
+  private static final int TILE = 5;
+  private static final int TICK = 6;
+  private static final int KEYFRAME = 7;
+  private static final int VISITED = 8;
+  private static final int BUMPS = 9;
+  private static final int TYPE_SHIFT = 60;
+  private static final long MASK_16 = 0xFFFFL;
+  private static final long MASK_32 = 0xFFFFFFFFL;
+
+  private final RPGModel model;
+  private final long[] records;
+  private final int keyframeInterval;
+  private int head;
+  private int size;
+  private int markers;
+  private int ticks;
+
+  /**
+   * Constructs an empty history.
+   *
+   * @param model the model whose changes are recorded
+   * @param capacity the number of records kept, older ones being overwritten
+   * @param keyframeInterval the number of ticks between two keyframes
+   */
+  public RPGHistory(RPGModel model, int capacity, int keyframeInterval) {
+    this.model = model;
+    this.records = new long[capacity];
+    this.keyframeInterval = keyframeInterval;
+  }
+
+  /** Forgets every record, at the start of a new game. */
+  public void clear() {
+    head = 0;
+    size = 0;
+    markers = 0;
+    ticks = 0;
+  }
+
+  /**
+   * Gets the number of ticks that can currently be rewound.
+   *
+   * @return the number of markers still in the buffer
+   */
+  public int rewindableTicks() {
+    return markers;
+  }
+
+  /**
+   * Checks if a rewind would change anything, the game having changed since its oldest marker.
+   *
+   * @return true if a record other than a marker is in the buffer, false otherwise
+   */
+  public boolean canRewind() {
+    return markers > 0 && size > markers;
+  }
+
+  /** Marks the start of a timer tick, with a keyframe of the whole state every K ticks. */
+  public void markTick() {
+    if (ticks++ % keyframeInterval == 0) {
+      long snapshot =
+          (model.getX() & MASK_16) << 44
+              | (model.getY() & MASK_16) << 28
+              | (model.timerSeconds() & MASK_16) << 12
+              | (model.getPlayerState() & 0x3FL) << 6
+              | (model.isFartOnCooldown() ? 1L << 5 : 0L)
+              | Math.min(31, model.getCooldownElapsedHalfSeconds());
+      push(KEYFRAME, snapshot);
+    } else {
+      push(TICK, ticks);
+    }
+  }
+
+  /**
+   * Records the position of the player before a move.
+   *
+   * @param x the previous x-coordinate
+   * @param y the previous y-coordinate
+   */
+  public void recordPosition(int x, int y) {
+    push(POSITION, (x & MASK_16) << 16 | (y & MASK_16));
+  }
+
+  /**
+   * Records the timer before it changes.
+   *
+   * @param seconds the previous remaining seconds
+   */
+  public void recordTimer(int seconds) {
+    push(TIMER, seconds & MASK_32);
+  }
+
+  /**
+   * Records the player state before it changes.
+   *
+   * @param state the previous player state
+   */
+  public void recordPlayerState(int state) {
+    push(STATE, state & MASK_32);
+  }
+
+  /**
+   * Records the fart cooldown before it changes.
+   *
+   * @param onCooldown whether the fart was on cooldown
+   * @param elapsedHalfSeconds the previous elapsed cooldown time in half seconds
+   */
+  public void recordCooldown(boolean onCooldown, int elapsedHalfSeconds) {
+    push(COOLDOWN, (onCooldown ? 1L << 32 : 0L) | (elapsedHalfSeconds & MASK_32));
+  }
+
+  /**
+   * Records a tile before it changes, such as a drug being taken.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @param tile the previous tile type
+   */
+  public void recordTile(int x, int y, byte tile) {
+    push(TILE, (x & MASK_16) << 24 | (y & MASK_16) << 8 | (tile & 0xFFL));
+  }
+
+  /**
+   * Records the first visit of a tile, undone by marking it unvisited again.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   */
+  public void recordVisited(int x, int y) {
+    push(VISITED, (x & MASK_16) << 16 | (y & MASK_16));
+  }
+
+  /**
+   * Records the number of bumps of the game before a bump.
+   *
+   * @param count the previous number of bumps
+   */
+  public void recordBumps(int count) {
+    push(BUMPS, count & MASK_32);
+  }
+
+  /**
+   * Rewinds the model to the start of a previous tick, or to the oldest recorded tick.
+   *
+   * @param ticksBack the number of ticks to go back, 1 being the start of the current tick
+   * @return the number of ticks actually rewound
+   */
+  public int rewind(int ticksBack) {
+    int target = Math.min(ticksBack, markers);
+    int passed = 0;
+    while (passed < target) {
+      int index = (head - 1 + records.length) % records.length;
+      long record = records[index];
+      int type = (int) (record >>> TYPE_SHIFT);
+      long value = record & ((1L << TYPE_SHIFT) - 1);
+
+      if (type == TICK || type == KEYFRAME) {
+        if (++passed == target) {
+          // Keep the target marker, the game resumes from the start of that tick
+          if (type == KEYFRAME) {
+            restoreKeyframe(value);
+          }
+          break;
+        }
+        --markers;
+      } else {
+        undo(type, value);
+      }
+      head = index;
+      --size;
+    }
+    ticks = Math.max(0, ticks - Math.max(0, target - 1));
+    model.resumeCooldown();
+    return target;
+  }
+
+  private void undo(int type, long value) {
+    switch (type) {
+      case POSITION:
+        model.restorePosition((short) (value >>> 16), (short) value);
+        break;
+      case TIMER:
+        model.restoreTimer((int) value);
+        break;
+      case STATE:
+        model.restorePlayerState((int) value);
+        break;
+      case COOLDOWN:
+        model.restoreCooldown((value >>> 32 & 1) != 0, (int) value);
+        break;
+      case TILE:
+        model.restoreTile((short) (value >>> 24), (short) (value >>> 8), (byte) value);
+        break;
+      case VISITED:
+        model.restoreUnvisited((short) (value >>> 16), (short) value);
+        break;
+      case BUMPS:
+        model.restoreBumpCount((int) value);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /** Restores the whole player state from a keyframe, exact even if a record was lost. */
+  private void restoreKeyframe(long snapshot) {
+    model.restorePosition((short) (snapshot >>> 44), (short) (snapshot >>> 28));
+    model.restoreTimer((short) (snapshot >>> 12));
+    model.restorePlayerState((int) (snapshot >>> 6 & 0x3F));
+    model.restoreCooldown((snapshot >>> 5 & 1) != 0, (int) (snapshot & 0x1F));
+  }
+
+  private void push(int type, long value) {
+    if (size == records.length) {
+      // Overwrite the oldest record, forgetting its tick if it was a marker
+      int oldestType = (int) (records[head] >>> TYPE_SHIFT);
+      if (oldestType == TICK || oldestType == KEYFRAME) {
+        --markers;
+      }
+    } else {
+      ++size;
+    }
+    if (type == TICK || type == KEYFRAME) {
+      ++markers;
+    }
+    records[head] = (long) type << TYPE_SHIFT | value;
+    head = (head + 1) % records.length;
+  }
+}
@@ -0,0 +1,255 @@
+package rpg;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Represents the tile layout of the game grid, independently of how it is displayed. */
+public class RPGMap {
+  /** Plain grass tile, freely walkable. */
+  public static final byte GRASS = 0;
+
+  /** Rock obstacle, blocks the player. */
+  public static final byte ROCK = 1;
+
+  /** Panel obstacle, blocks the player. */
+  public static final byte PANEL = 2;
+
+  /** Drug bonus, consumed when the player walks on it. */
+  public static final byte DRUG = 3;
+
+  /** The house, reaching it wins the game. */
+  public static final byte HOUSE = 4;
+
+  private static final int HOUSE_X = 0;
+  private static final int HOUSE_Y = 5;
+
+  private static final int[] DX = {-1, 1, 0, 0};
+  private static final int[] DY = {0, 0, -1, 1};
+
+  private final int size;
+  private final long seed;
+  private final byte[] tiles;
+  private final Bitboard obstacles;
+  private final Bitboard drugs;
+
+  /**
+   * Constructs an empty map of grass tiles.
+   *
+   * @param size the width and height of the map
+   * @param seed the seed the map was generated from
+   */
+  public RPGMap(int size, long seed) {
+    this.size = size;
+    this.seed = seed;
+    this.tiles = new byte[size * size];
+    this.obstacles = new Bitboard(size);
+    this.drugs = new Bitboard(size);
+  }
+
+  /**
+   * Generates a random map using the game spawn rules: a house at its fixed location, then 10%
+   * rocks, 10% panels and 5% drugs on the remaining tiles.
+   *
+   * @param size the width and height of the map
+   * @param seed the seed of the random generator
+   * @return the generated map
+   */
+  public static RPGMap generate(int size, long seed) {
+    RPGMap map = new RPGMap(size, seed);
+    Random random = new Random(seed);
+
+    for (int i = 0; i < size; ++i) {
+      for (int j = 0; j < size; ++j) {
+        if (i == HOUSE_X && j == HOUSE_Y) {
+          map.setTile(i, j, HOUSE);
+        } else if (random.nextDouble() < 0.1) {
+          map.setTile(i, j, ROCK);
+        } else if (random.nextDouble() < 0.1) {
+          map.setTile(i, j, PANEL);
+        } else if (random.nextDouble() < 0.05) {
+          map.setTile(i, j, DRUG);
+        }
+      }
+    }
+    return map;
+  }
+
+  /**
+   * Gets the size of the map.
+   *
+   * @return the width and height of the map
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Gets the seed the map was generated from.
+   *
+   * @return the seed of the map
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Gets the tile at the specified position.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @return the tile type, one of the constants of this class
+   */
+  public byte getTile(int x, int y) {
+    return tiles[x * size + y];
+  }
+
+  /**
+   * Sets the tile at the specified position.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @param tile the tile type, one of the constants of this class
+   */
+  public void setTile(int x, int y, byte tile) {
+    tiles[x * size + y] = tile;
+    // Keep the layers of the collision and drug queries in sync with the tiles
+    obstacles.set(x, y, RPGRules.isObstacle(tile));
+    drugs.set(x, y, tile == DRUG);
+  }
+
+  /**
+   * Gets the obstacle layer of the map, one bit per rock or panel.
+   *
+   * @return the obstacle layer, kept in sync with the tiles
+   */
+  public Bitboard getObstacles() {
+    return obstacles;
+  }
+
+  /**
+   * Gets the drug layer of the map, one bit per drug.
+   *
+   * @return the drug layer, kept in sync with the tiles
+   */
+  public Bitboard getDrugs() {
+    return drugs;
+  }
+
+  /**
+   * Checks if the specified position is inside the map.
+   *
+   * @param x the x-coordinate
+   * @param y the y-coordinate
+   * @return true if the position is inside the map, false otherwise
+   */
+  public boolean inBounds(int x, int y) {
+    return x >= 0 && x < size && y >= 0 && y < size;
+  }
+
+  /**
+   * Checks if there is an obstacle (rock or panel) at the specified position.
+   *
+   * @param x the x-coordinate
+   * @param y the y-coordinate
+   * @return true if there is an obstacle, false otherwise
+   */
+  public boolean isObstacle(int x, int y) {
+    return obstacles.get(x, y);
+  }
+
+  /**
+   * Checks if there is a drug at the specified position.
+   *
+   * @param x the x-coordinate
+   * @param y the y-coordinate
+   * @return true if there is a drug, false otherwise
+   */
+  public boolean isDrug(int x, int y) {
+    return drugs.get(x, y);
+  }
+
+  /**
+   * Checks if the house is at the specified position.
+   *
+   * @param x the x-coordinate
+   * @param y the y-coordinate
+   * @return true if the house is there, false otherwise
+   */
+  public boolean isHouse(int x, int y) {
+    return getTile(x, y) == HOUSE;
+  }
+
+  /**
+   * Copies the tiles into an array, so that a simulation can consume drugs without touching the
+   * map.
+   *
+   * @param destination the array receiving the tiles, indexed by x * size + y
+   */
+  public void copyTiles(byte[] destination) {
+    System.arraycopy(tiles, 0, destination, 0, tiles.length);
+  }
+
+  /**
+   * Computes the tiles the player can walk to from the start tile, with a word-parallel flood fill
+   * of the obstacle layer.
+   *
+   * @param startX the x-coordinate of the player's start tile
+   * @param startY the y-coordinate of the player's start tile
+   * @return the reachable tiles, the start tile included
+   */
+  public Bitboard reachable(int startX, int startY) {
+    return Bitboard.floodFill(obstacles.complement(), startX, startY);
+  }
+
+  /**
+   * Checks if the map can be won: the house exists and can be reached from the start tile.
+   *
+   * @param startX the x-coordinate of the player's start tile
+   * @param startY the y-coordinate of the player's start tile
+   * @return true if the house is reachable, false otherwise
+   */
+  public boolean isValid(int startX, int startY) {
+    if (!inBounds(HOUSE_X, HOUSE_Y) || !isHouse(HOUSE_X, HOUSE_Y)) {
+      return false;
+    }
+    return reachable(startX, startY).get(HOUSE_X, HOUSE_Y);
+  }
+
+  /**
+   * Computes the number of moves from every tile to the house, avoiding obstacles. The start tile
+   * counts as walkable since the player clears it by standing on it.
+   *
+   * @param startX the x-coordinate of the player's start tile
+   * @param startY the y-coordinate of the player's start tile
+   * @return the distances indexed by x * size + y, -1 where the house is unreachable
+   */
+  public int[] houseDistances(int startX, int startY) {
+    int[] result = new int[size * size];
+    int[] queue = new int[size * size];
+    int tail = 0;
+    Arrays.fill(result, -1);
+    for (int i = 0; i < tiles.length; ++i) {
+      if (tiles[i] == HOUSE) {
+        result[i] = 0;
+        queue[tail++] = i;
+      }
+    }
+
+    // Breadth first search from the house
+    for (int head = 0; head < tail; ++head) {
+      int x = queue[head] / size;
+      int y = queue[head] % size;
+      for (int d = 0; d < DX.length; ++d) {
+        int nx = x + DX[d];
+        int ny = y + DY[d];
+        if (inBounds(nx, ny)
+            && (!isObstacle(nx, ny) || (nx == startX && ny == startY))
+            && result[nx * size + ny] < 0) {
+          result[nx * size + ny] = result[queue[head]] + 1;
+          queue[tail++] = nx * size + ny;
+        }
+      }
+    }
+    return result;
+  }
+}
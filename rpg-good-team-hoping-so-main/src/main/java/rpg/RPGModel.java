@@ -1,27 +1,113 @@
 package rpg;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
 import javafx.scene.input.KeyCode;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
 import javafx.util.Duration;
+import rpg.audio.Music;
+import rpg.solver.RPGSolver;
+import rpg.telemetry.TelemetrySink;
 
 /** Represents the model component of an RPG game. */
 public class RPGModel {
-  private static final int SIZE = 10;
-  private int x = 8;
-  private int y = 0;
-  private static final int TIMER_DURATION = 17; // 15s takes around 2 to appear
-  private int timerSeconds;
+  /** The default width and height of the game grid. */
+  public static final int SIZE = 10;
+  /** The default starting x-coordinate of the player. */
+  public static final int START_X = 8;
+  /** The default starting y-coordinate of the player. */
+  public static final int START_Y = 0;
+  /** The initial duration of the timer in seconds. */
+  public static final int TIMER_DURATION = 17; // 15s takes around 2 to appear
+  /** The seconds lost when bumping into an obstacle or the grid border. */
+  public static final int BUMP_PENALTY = 2;
+  /** The seconds gained when taking drugs. */
+  public static final int DRUG_BONUS = 3;
+  /** The seconds gained by a successful fart. */
+  public static final int FART_BONUS = 5;
+  /** The probability that a fart succeeds instead of ending the game. */
+  public static final double FART_SUCCESS_CHANCE = 0.8;
+  /** The cooldown of the fart action in seconds. */
+  public static final int FART_COOLDOWN = 5;
+  /** The seconds the rewind power-up goes back in time. */
+  public static final int REWIND_SECONDS = 3;
+
+  private static final int HISTORY_CAPACITY = 4096;
+  private static final int KEYFRAME_INTERVAL = 8;
+  // Rates the maps of every session one at a time, away from the JavaFX thread
+  private static final ExecutorService RATER =
+      Executors.newSingleThreadExecutor(
+          task -> {
+            Thread thread = new Thread(task, "rpg-map-rating");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  // Each game session has its own grid, random generators and timers
+  private final int size;
+  private final int startX;
+  private final int startY;
+  private final Random mapRandom;
+  private final Random random;
+  private int x;
+  private int y;
+  private RPGMap map;
+  private final ReadOnlyIntegerWrapper timerSeconds =
+      new ReadOnlyIntegerWrapper(this, "timerSeconds");
+  private final ReadOnlyDoubleWrapper cooldownProgress =
+      new ReadOnlyDoubleWrapper(this, "cooldownProgress", 1.0);
+  private final ReadOnlyIntegerWrapper playerState =
+      new ReadOnlyIntegerWrapper(this, "playerState");
+  private final ReadOnlyDoubleWrapper difficulty =
+      new ReadOnlyDoubleWrapper(this, "difficulty", Double.NaN);
   private Timeline timer;
   private Runnable timerUpdateCallback;
   private RPGController controller;
   private boolean fartOnCooldown; // New field to track the cooldown
   private Timeline cooldownTimer; // New field to track the cooldown timer
+  private Timeline cooldownProgressTimer;
   private double elapsedTime;
+  private final RPGHistory history = new RPGHistory(this, HISTORY_CAPACITY, KEYFRAME_INTERVAL);
+  private boolean rewindUsed;
+  private long session;
+  private int fogRadius;
+  private FieldOfView fieldOfView;
+  private Bitboard visited;
+  private int[] bumps = new int[16];
+  private int bumpCount;
+  private int ticks;
 
   public RPGModel() {
+    this(SIZE, START_X, START_Y, System.nanoTime(), System.nanoTime());
+  }
+
+  /**
+   * Constructs the model of a game session.
+   *
+   * @param size the width and height of the game grid
+   * @param startX the starting x-coordinate of the player
+   * @param startY the starting y-coordinate of the player
+   * @param mapSeed the seed of the maps, shared by sessions racing on the same maps
+   * @param seed the seed of the session ids and the fart outcomes of the session
+   */
+  public RPGModel(int size, int startX, int startY, long mapSeed, long seed) {
+    this.size = size;
+    this.startX = startX;
+    this.startY = startY;
+    this.mapRandom = new Random(mapSeed);
+    this.random = new Random(seed);
+    this.x = startX;
+    this.y = startY;
+    this.map = RPGMap.generate(size, mapRandom.nextLong());
+    this.visited = new Bitboard(size);
     // Initialize the cooldown as false
     this.fartOnCooldown = false;
   }
@@ -36,7 +122,118 @@ public class RPGModel {
    * @return the size of the game grid
    */
   public int getSize() {
-    return SIZE;
+    return size;
+  }
+
+  /**
+   * Gets the x-coordinate of the player's start tile.
+   *
+   * @return the starting x-coordinate
+   */
+  public int getStartX() {
+    return startX;
+  }
+
+  /**
+   * Gets the y-coordinate of the player's start tile.
+   *
+   * @return the starting y-coordinate
+   */
+  public int getStartY() {
+    return startY;
+  }
+
+  /**
+   * Gets the map of the current game.
+   *
+   * @return the map of the current game
+   */
+  public RPGMap getMap() {
+    return map;
+  }
+
+  /** Generates a fresh random map for a new game. */
+  public void newMap() {
+    map = RPGMap.generate(size, mapRandom.nextLong());
+    fieldOfView = fogRadius > 0 ? new FieldOfView(map, fogRadius) : null;
+    visited = new Bitboard(size);
+    bumpCount = 0;
+    // The panic state of the last game would otherwise show on the new player
+    playerState.set(0);
+  }
+
+  /**
+   * Rates the difficulty of the current map on a background thread. The difficulty property is NaN
+   * until the rating is done, and stays NaN for a map the solver cannot rate.
+   */
+  public void rateMap() {
+    RPGMap rated = map;
+    difficulty.set(Double.NaN);
+    RPGSolver solver;
+    try {
+      // The drugs are indexed here, the solve only reads the obstacles and the house, which a game
+      // never changes
+      solver = new RPGSolver(rated, startX, startY);
+    } catch (IllegalArgumentException e) {
+      // The rating is exact or not given at all
+      return;
+    }
+    RATER.execute(
+        () -> {
+          double value = solver.difficulty();
+          Platform.runLater(
+              () -> {
+                // The rating of a map replaced in the meantime is dropped
+                if (map == rated) {
+                  difficulty.set(value);
+                }
+              });
+        });
+  }
+
+  /**
+   * Gets the difficulty rating of the current map.
+   *
+   * @return the probability of losing the map under optimal play, NaN if not rated
+   */
+  public double getDifficulty() {
+    return difficulty.get();
+  }
+
+  /**
+   * Gets the difficulty rating of the current map as an observable property, as shown by the HUD.
+   *
+   * @return the property of the difficulty, NaN until the map is rated
+   */
+  public ReadOnlyDoubleProperty difficultyProperty() {
+    return difficulty.getReadOnlyProperty();
+  }
+
+  /**
+   * Gets the tiles the player walked on during the current game, rewound moves excluded.
+   *
+   * @return the visited layer of the current game
+   */
+  public Bitboard getVisited() {
+    return visited;
+  }
+
+  /**
+   * Turns the fog-of-war mode on for the next games.
+   *
+   * @param radius the distance the player sees in tiles, 0 to turn the fog off
+   */
+  public void setFogRadius(int radius) {
+    fogRadius = radius;
+  }
+
+  /**
+   * Gets the field of view of the current game.
+   *
+   * @return the field of view, or null if the fog-of-war mode is off
+   */
+  public FieldOfView getFieldOfView() {
+    return fieldOfView;
   }
 
   /**
@@ -65,40 +262,16 @@ public class RPGModel {
   public void actPlayer(KeyCode keyCode) {
     switch (keyCode) {
       case UP:
-        // Move the player up if within the grid bounds and no obstacle
-        if (x > 0 && !controller.hasObstacleAt(x - 1, y)) {
-          controller.gameWon(x - 1, y);
-          --x;
-        } else {
-          timerSeconds(-2);
-        }
+        step(x - 1, y, TelemetrySink.UP);
         break;
       case DOWN:
-        // Move the player down if within the grid bounds and no obstacle
-        if (x < SIZE - 1 && !controller.hasObstacleAt(x + 1, y)) {
-          controller.gameWon(x + 1, y);
-          ++x;
-        } else {
-          timerSeconds(-2);
-        }
+        step(x + 1, y, TelemetrySink.DOWN);
         break;
       case LEFT:
-        // Move the player to the left if within the grid bounds and no obstacle
-        if (y > 0 && !controller.hasObstacleAt(x, y - 1)) {
-          controller.gameWon(x, y - 1);
-          --y;
-        } else {
-          timerSeconds(-2);
-        }
+        step(x, y - 1, TelemetrySink.LEFT);
         break;
       case RIGHT:
-        // Move the player to the right if within the grid bounds and no obstacle
-        if (y < SIZE - 1 && !controller.hasObstacleAt(x, y + 1)) {
-          controller.gameWon(x, y + 1);
-          ++y;
-        } else {
-          timerSeconds(-2);
-        }
+        step(x, y + 1, TelemetrySink.RIGHT);
         break;
       case F:
         // Perform the fart action if not on cooldown
@@ -108,32 +281,57 @@ public class RPGModel {
           System.out.println("Fart on cooldown! Wait for 5 seconds.");
         }
         break;
+      case R:
+        // Use the rewind power-up, once per game and only once there is something to undo
+        if (!rewindUsed && history.canRewind()) {
+          rewindUsed = true;
+          rewind(REWIND_SECONDS);
+        }
+        break;
       default:
         break;
     }
   }
 
+  /**
+   * Moves the player to a neighbouring tile if within the grid bounds and no obstacle, or bumps.
+   * The move is logged for balancing before a win ends the session with its END record.
+   */
+  private void step(int newX, int newY, int action) {
+    if (map.inBounds(newX, newY) && !controller.hasObstacleAt(newX, newY)) {
+      moveTo(newX, newY);
+      recordTelemetry(action, map.isDrug(x, y) ? TelemetrySink.DRUG : 0);
+      controller.gameWon(x, y);
+    } else {
+      bump(newX, newY);
+      recordTelemetry(action, TelemetrySink.COLLISION);
+    }
+  }
+
   /** Performs the fart action. */
   private void fart() {
     // Play the fart sound
     playFartSound();
 
     // Start a cooldown
-    fartOnCooldown = true;
+    setCooldown(true, 0.0);
     System.out.println("Fart! Cooldown activated for 5 seconds.");
-    startCooldownTimer(5.0);
+    startCooldownTimer(FART_COOLDOWN);
 
-    if (timerSeconds > 0) {
-      if (Math.random() < 0.8) {
+    if (timerSeconds.get() > 0) {
+      int timer = RPGRules.fart(timerSeconds.get(), 1, RPGRules.UNCAPPED, random.nextDouble());
+      if (!RPGRules.isTimeUp(timer)) {
         // Add time to the timer (4/5 probability)
-        timerSeconds(5);
+        setTimer(timer);
+        recordTelemetry(TelemetrySink.FART, TelemetrySink.FART_SUCCESS);
         System.out.println("Timer increased by 10 seconds.");
       } else {
         // End the game (1/5 probability)
-        timerSeconds = 0;
+        setTimer(timer);
+        recordTelemetry(TelemetrySink.FART, TelemetrySink.FART_FAILURE);
         System.out.println("Uh-oh! You couldn't hold it in. Game over!");
         // Check if the controller is not null before invoking the goToMenu() method
-        if (controller != null && !controller.menuDisplayed) {
+        if (controller != null && !controller.isMenuDisplayed()) {
           controller.goToMenu(true, false);
         }
       }
@@ -153,33 +351,32 @@ public class RPGModel {
    */
   private void startCooldownTimer(double cooldownDuration) {
     double updateInterval = 0.5;
-    // Reset elapsedTime to 0
-    elapsedTime = 0.0;
+    // Continue from elapsedTime, 0 for a new fart or more when resuming after a rewind
+    double remaining = cooldownDuration - elapsedTime;
+    cooldownProgress.set(getCooldownProgress());
 
     // Create and play the cooldown progress timer
-    Timeline cooldownProgressTimer =
+    cooldownProgressTimer =
         new Timeline(
             new KeyFrame(
                 Duration.seconds(updateInterval),
                 event -> {
-                  elapsedTime += updateInterval;
-                  double cooldownProgress = getCooldownProgress();
-                  if (controller != null) {
-                    // Update the progress bar
-                    controller.fartCooldown(cooldownProgress);
-                  }
+                  setCooldown(true, elapsedTime + updateInterval);
+                  // Update the progress observed by the cooldown bar
+                  cooldownProgress.set(getCooldownProgress());
                 }));
-    cooldownProgressTimer.setCycleCount((int) (cooldownDuration / updateInterval));
+    cooldownProgressTimer.setCycleCount((int) (remaining / updateInterval));
     cooldownProgressTimer.play();
 
     // Create and play the cooldown timer
     cooldownTimer =
         new Timeline(
             new KeyFrame(
-                Duration.seconds(cooldownDuration),
+                Duration.seconds(remaining),
                 event -> {
                   // Reset the cooldown after 5 seconds
-                  fartOnCooldown = false;
+                  setCooldown(false, elapsedTime);
+                  cooldownProgress.set(1.0);
                   System.out.println("Fart cooldown expired.");
                 }));
     cooldownTimer.play();
@@ -187,9 +384,7 @@ public class RPGModel {
 
   /** Plays the fart sound. */
   private void playFartSound() {
-    Media fartSound = new Media(getClass().getResource("/sounds/fart-sound.wav").toExternalForm());
-    MediaPlayer mediaPlayer = new MediaPlayer(fartSound);
-    mediaPlayer.play();
+    Music.get().playEffect("fart-sound.wav", controller != null ? controller.getVolume() : 1.0);
   }
 
   /**
@@ -198,20 +393,30 @@ public class RPGModel {
    * @param callback the callback function to be executed every second
    */
   public void startTimer(Runnable callback) {
-    timerSeconds = TIMER_DURATION;
+    timerSeconds.set(TIMER_DURATION);
+    history.clear();
+    rewindUsed = false;
+    // A random id identifies the session in the telemetry, several sessions may share a map
+    session = random.nextLong();
+    ticks = 0;
+    // The start of the game is the oldest point a rewind goes back to
+    history.markTick();
 
     timer =
         new Timeline(
             new KeyFrame(
                 Duration.seconds(1),
                 event -> {
-                  timerSeconds--;
+                  history.markTick();
+                  ++ticks;
+                  setTimer(timerSeconds.get() - 1);
                   callback.run();
                   if (timerUpdateCallback != null) {
                     timerUpdateCallback.run();
                   }
                 }));
-    timer.setCycleCount(TIMER_DURATION + 1); // Add +1 to include the initial value
+    // Bonuses and rewinds add time, the controller stops the timer when it runs out
+    timer.setCycleCount(Timeline.INDEFINITE);
     timer.play();
   }
 
@@ -226,7 +431,7 @@ public class RPGModel {
    * @return the remaining time on the timer
    */
   public int timerSeconds() {
-    return timerSeconds;
+    return timerSeconds.get();
   }
 
   /**
@@ -236,8 +441,22 @@ public class RPGModel {
    *     negative)
    */
   public int timerSeconds(int secondsToAddOrSubtract) {
-    timerSeconds += secondsToAddOrSubtract;
-    return timerSeconds;
+    setTimer(timerSeconds.get() + secondsToAddOrSubtract);
+    return timerSeconds.get();
+  }
+
+  /** Adds the bonus of the drugs the player just took to the timer. */
+  public void takeDrug() {
+    setTimer(RPGRules.takeDrug(timerSeconds.get(), 1, RPGRules.UNCAPPED));
+  }
+
+  /**
+   * Gets the remaining time on the timer as an observable property.
+   *
+   * @return the property of the remaining seconds
+   */
+  public ReadOnlyIntegerProperty timerSecondsProperty() {
+    return timerSeconds.getReadOnlyProperty();
   }
 
   /**
@@ -255,7 +474,16 @@ public class RPGModel {
    * @return the progress of the fart cooldown, a value between 0.0 and 1.0
    */
   public double getCooldownProgress() {
-    return fartOnCooldown ? (elapsedTime / 5.0) : 0.0;
+    return fartOnCooldown ? (elapsedTime / FART_COOLDOWN) : 0.0;
+  }
+
+  /**
+   * Gets the progress of the fart cooldown as an observable property, as shown by the cooldown bar.
+   *
+   * @return the property of the progress, 1.0 when the fart is ready
+   */
+  public ReadOnlyDoubleProperty cooldownProgressProperty() {
+    return cooldownProgress.getReadOnlyProperty();
   }
 
   /**
@@ -272,10 +500,8 @@ public class RPGModel {
    *
    * @return the state of the player
    */
-  private int playerState = 0;
-
   public int getPlayerState() {
-    return playerState;
+    return playerState.get();
   }
 
   /**
@@ -284,12 +510,182 @@ public class RPGModel {
    * @param playerState the state of the player
    */
   public void setPlayerState(int playerState) {
-    this.playerState = playerState;
+    if (playerState != this.playerState.get()) {
+      history.recordPlayerState(this.playerState.get());
+      this.playerState.set(playerState);
+    }
+  }
+
+  /**
+   * Gets the state of the player as an observable property.
+   *
+   * @return the property of the player state
+   */
+  public ReadOnlyIntegerProperty playerStateProperty() {
+    return playerState.getReadOnlyProperty();
   }
 
-  /** Resets the position of the player to the initial position. */
+  /**
+   * Resets the position of the player to the initial position, before the timer starts. An obstacle
+   * the map generated under the start tile is removed.
+   */
   public void resetPosition() {
-    this.x = 8;
-    this.y = 0;
+    this.x = startX;
+    this.y = startY;
+    if (map.isObstacle(x, y)) {
+      map.setTile(x, y, RPGMap.GRASS);
+    }
+    visited.set(x, y, true);
+  }
+
+  /**
+   * Clears the drug under the player once taken. Other tiles, such as the house the player enters
+   * when winning, are left as they are.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   */
+  public void clearTile(int x, int y) {
+    if (map.isDrug(x, y)) {
+      history.recordTile(x, y, RPGMap.DRUG);
+      map.setTile(x, y, RPGMap.GRASS);
+    }
+  }
+
+  /**
+   * Records an action of the current session in the telemetry, with the player position and the
+   * timer.
+   *
+   * @param action the action, one of the TelemetrySink action constants
+   * @param flags the outcome flags, TelemetrySink flag constants combined
+   */
+  public void recordTelemetry(int action, int flags) {
+    TelemetrySink.get().record(session, ticks, size, x, y, action, flags, timerSeconds.get());
+  }
+
+  /**
+   * Rewinds the game, restoring the exact state it had a number of timer ticks ago.
+   *
+   * @param seconds the number of seconds to go back
+   */
+  public void rewind(int seconds) {
+    // One more marker than seconds, the first one being the start of the current tick
+    history.rewind(seconds + 1);
+  }
+
+  /**
+   * Gets the history recording the changes of the model.
+   *
+   * @return the history of the current game
+   */
+  public RPGHistory getHistory() {
+    return history;
+  }
+
+  /**
+   * Gets the elapsed time of the fart cooldown.
+   *
+   * @return the elapsed cooldown time in half seconds
+   */
+  public int getCooldownElapsedHalfSeconds() {
+    return (int) Math.round(elapsedTime * 2);
+  }
+
+  /** Takes the penalty of a move into an obstacle or the grid border, remembering the obstacle. */
+  private void bump(int targetX, int targetY) {
+    setTimer(RPGRules.bump(timerSeconds.get(), 1));
+    if (map.inBounds(targetX, targetY)) {
+      history.recordBumps(bumpCount);
+      if (bumpCount == bumps.length) {
+        bumps = Arrays.copyOf(bumps, bumpCount << 1);
+      }
+      bumps[bumpCount++] = targetX * size + targetY;
+    }
+  }
+
+  /**
+   * Gets the obstacle tiles the player bumped into during the current game.
+   *
+   * @return the tiles indexed by x * size + y, once per bump
+   */
+  public int[] getBumps() {
+    return Arrays.copyOf(bumps, bumpCount);
+  }
+
+  private void moveTo(int newX, int newY) {
+    history.recordPosition(x, y);
+    x = newX;
+    y = newY;
+    if (!visited.get(x, y)) {
+      history.recordVisited(x, y);
+      visited.set(x, y, true);
+    }
+  }
+
+  private void setTimer(int seconds) {
+    history.recordTimer(timerSeconds.get());
+    timerSeconds.set(seconds);
+  }
+
+  private void setCooldown(boolean onCooldown, double elapsed) {
+    history.recordCooldown(fartOnCooldown, getCooldownElapsedHalfSeconds());
+    fartOnCooldown = onCooldown;
+    elapsedTime = elapsed;
+  }
+
+  /** Restores the player position, without recording it. */
+  void restorePosition(int x, int y) {
+    this.x = x;
+    this.y = y;
+  }
+
+  /** Restores the timer, without recording it. */
+  void restoreTimer(int seconds) {
+    timerSeconds.set(seconds);
+  }
+
+  /** Restores the player state, without recording it. */
+  void restorePlayerState(int state) {
+    playerState.set(state);
+  }
+
+  /** Restores the fart cooldown, without recording it. The timers restart in resumeCooldown. */
+  void restoreCooldown(boolean onCooldown, int elapsedHalfSeconds) {
+    fartOnCooldown = onCooldown;
+    elapsedTime = elapsedHalfSeconds / 2.0;
+  }
+
+  /** Restores a tile and redraws it, without recording it. */
+  void restoreTile(int x, int y, byte tile) {
+    map.setTile(x, y, tile);
+    if (controller != null) {
+      controller.tileRestored(x, y);
+    }
+  }
+
+  /** Marks a tile unvisited again and redraws it, without recording it. */
+  void restoreUnvisited(int x, int y) {
+    visited.set(x, y, false);
+    if (controller != null) {
+      controller.tileRestored(x, y);
+    }
+  }
+
+  /** Forgets the bumps after a previous count, without recording it. */
+  void restoreBumpCount(int count) {
+    bumpCount = count;
+  }
+
+  /** Restarts the cooldown timers from the restored cooldown state after a rewind. */
+  void resumeCooldown() {
+    if (cooldownTimer != null) {
+      cooldownTimer.stop();
+      cooldownProgressTimer.stop();
+    }
+    if (fartOnCooldown) {
+      startCooldownTimer(FART_COOLDOWN);
+    } else {
+      cooldownProgress.set(1.0);
+    }
   }
 }
@@ -0,0 +1,73 @@
+package rpg;
+
+/**
+ * The rules of the game shared by RPGModel, the endless mode and the bot environment: which tiles
+ * block the player and how bumps, drugs, farts and the clock change the timer. The timer may count
+ * seconds, as in the game, or ticks of several per second, as in the bot environment, and bonuses
+ * may be capped.
+ */
+public final class RPGRules {
+  /** The cap of a timer whose bonuses are never lost. */
+  public static final int UNCAPPED = Integer.MAX_VALUE;
+
+  private RPGRules() {}
+
+  /**
+   * Checks if a tile blocks the player.
+   *
+   * @param tile the tile type, one of the RPGMap constants
+   * @return true for a rock or a panel, false otherwise
+   */
+  public static boolean isObstacle(byte tile) {
+    return tile == RPGMap.ROCK || tile == RPGMap.PANEL;
+  }
+
+  /**
+   * Applies the penalty of a move into an obstacle or the grid border.
+   *
+   * @param timer the timer before the bump
+   * @param unitsPerSecond the number of timer units per second
+   * @return the timer after the bump
+   */
+  public static int bump(int timer, int unitsPerSecond) {
+    return timer - RPGModel.BUMP_PENALTY * unitsPerSecond;
+  }
+
+  /**
+   * Applies the bonus of taking drugs.
+   *
+   * @param timer the timer before taking the drugs
+   * @param unitsPerSecond the number of timer units per second
+   * @param maxTimer the timer value above which the bonus is lost, UNCAPPED for none
+   * @return the timer after taking the drugs
+   */
+  public static int takeDrug(int timer, int unitsPerSecond, int maxTimer) {
+    return Math.min(maxTimer, timer + RPGModel.DRUG_BONUS * unitsPerSecond);
+  }
+
+  /**
+   * Applies the outcome of a fart: a bonus if it succeeds, the end of the game otherwise.
+   *
+   * @param timer the timer before the fart
+   * @param unitsPerSecond the number of timer units per second
+   * @param maxTimer the timer value above which the bonus is lost, UNCAPPED for none
+   * @param roll a uniform random number from 0 to 1 deciding the outcome
+   * @return the timer after the fart, 0 if it failed
+   */
+  public static int fart(int timer, int unitsPerSecond, int maxTimer, double roll) {
+    if (roll < RPGModel.FART_SUCCESS_CHANCE) {
+      return Math.min(maxTimer, timer + RPGModel.FART_BONUS * unitsPerSecond);
+    }
+    return 0;
+  }
+
+  /**
+   * Checks if the timer ran out, which ends the game.
+   *
+   * @param timer the timer
+   * @return true if no time is left, false otherwise
+   */
+  public static boolean isTimeUp(int timer) {
+    return timer <= 0;
+  }
+}
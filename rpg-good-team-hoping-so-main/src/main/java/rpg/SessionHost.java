@@ -0,0 +1,25 @@
+package rpg;
+
+import javafx.stage.Stage;
+
+/**
+ * Hosts game sessions that do not own their window, such as the games of a split-screen match. A
+ * hosted controller hands its start and end over to its host instead of switching windows.
+ */
+public interface SessionHost {
+  /**
+   * Starts a new round of the hosted sessions, when the menu start button is pressed.
+   *
+   * @param stage the stage of the menu, to display the sessions on
+   */
+  void start(Stage stage);
+
+  /**
+   * Handles the end of a hosted session, whose timers, music and animations are already stopped.
+   *
+   * @param session the controller of the session
+   * @param gamePlayed true if the game was played to the end, false if it was abandoned
+   * @param gameWon true if the player reached the house
+   */
+  void sessionEnded(RPGController session, boolean gamePlayed, boolean gameWon);
+}
@@ -0,0 +1,125 @@
+package rpg;
+
+import java.util.Random;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.HBox;
+import javafx.stage.Stage;
+import rpg.ui.DevReloader;
+import rpg.ui.RPGMenuView;
+
+/**
+ * Hosts several game sessions side by side in one window, each player with its own keys. Every
+ * session has its own model, map generator, timers and view; their map generators share a seed so
+ * that all players race on the same maps, while each session draws its own session ids and fart
+ * outcomes. Only the first player is heard.
+ */
+public class SplitScreen implements SessionHost {
+  /** The largest number of players, one per set of keys. */
+  public static final int MAX_PLAYERS = 4;
+
+  // The keys of each player, in the order of the single-player keys below
+  private static final KeyCode[][] KEYS = {
+    {KeyCode.UP, KeyCode.DOWN, KeyCode.LEFT, KeyCode.RIGHT, KeyCode.F, KeyCode.R},
+    {KeyCode.W, KeyCode.S, KeyCode.A, KeyCode.D, KeyCode.Q, KeyCode.E},
+    {KeyCode.I, KeyCode.K, KeyCode.J, KeyCode.L, KeyCode.U, KeyCode.O},
+    {
+      KeyCode.NUMPAD8,
+      KeyCode.NUMPAD5,
+      KeyCode.NUMPAD4,
+      KeyCode.NUMPAD6,
+      KeyCode.NUMPAD7,
+      KeyCode.NUMPAD9
+    }
+  };
+
+  private final RPGController[] sessions;
+  private Stage stage;
+  private int running;
+  private boolean anyPlayed;
+  private boolean anyWon;
+
+  /**
+   * Constructs the sessions of a split-screen match.
+   *
+   * @param players the number of players, from 1 to MAX_PLAYERS
+   * @param seed the seed of the match, from which the shared map seed and the seed of each session
+   *     are drawn
+   * @param fogRadius the radius of the fog-of-war mode, 0 without fog
+   */
+  public SplitScreen(int players, long seed, int fogRadius) {
+    sessions = new RPGController[Math.max(1, Math.min(MAX_PLAYERS, players))];
+    Random random = new Random(seed);
+    long mapSeed = random.nextLong();
+    for (int i = 0; i < sessions.length; ++i) {
+      RPGModel model =
+          new RPGModel(
+              RPGModel.SIZE, RPGModel.START_X, RPGModel.START_Y, mapSeed, random.nextLong());
+      model.setFogRadius(fogRadius);
+      // The view is created by each game
+      sessions[i] = new RPGController(model, null);
+      sessions[i].setHost(this);
+      sessions[i].setVolume(i == 0 ? 1.0 : 0.0);
+      model.setController(sessions[i]);
+    }
+  }
+
+  /**
+   * Gets the controller of the first player, which starts new rounds from the menu.
+   *
+   * @return the controller of the first session
+   */
+  public RPGController getLeader() {
+    return sessions[0];
+  }
+
+  @Override
+  public void start(Stage stage) {
+    this.stage = stage;
+    running = sessions.length;
+    anyPlayed = false;
+    anyWon = false;
+
+    // Start every session and place their boards side by side
+    HBox boards = new HBox(10);
+    for (RPGController session : sessions) {
+      session.startSession();
+      boards.getChildren().add(session.getView().createGameRoot());
+    }
+
+    Scene scene = new Scene(boards);
+    scene.getStylesheets().add(DevReloader.stylesheet());
+    // Route each key to the session of its player, translated to the single-player key
+    scene.setOnKeyReleased(
+        event -> {
+          for (int player = 0; player < sessions.length; ++player) {
+            for (int key = 0; key < KEYS[player].length; ++key) {
+              if (KEYS[player][key] == event.getCode()) {
+                sessions[player].getView().handleKey(KEYS[0][key]);
+              }
+            }
+          }
+        });
+
+    stage.setScene(scene);
+    stage.show();
+  }
+
+  @Override
+  public void sessionEnded(RPGController session, boolean gamePlayed, boolean gameWon) {
+    for (int player = 0; player < sessions.length; ++player) {
+      if (sessions[player] == session) {
+        System.out.println("Player " + (player + 1) + (gameWon ? " won!" : " is out."));
+      }
+    }
+    anyPlayed |= gamePlayed;
+    anyWon |= gameWon;
+
+    // Back to the menu once every player is done
+    if (--running == 0) {
+      stage.close();
+      RPGMenuView menuView = new RPGMenuView(new Stage(), getLeader());
+      menuView.display(anyPlayed, anyWon);
+    }
+  }
+}
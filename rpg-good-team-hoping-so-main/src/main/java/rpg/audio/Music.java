@@ -0,0 +1,179 @@
+package rpg.audio;
+
+import java.util.HashMap;
+import java.util.Map;
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
+import javafx.scene.media.AudioClip;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+/**
+ * The music and sound effects of the application. Owns one player per track file for the whole run:
+ * the players loop natively between their loop points, switching tracks crossfades the volumes, and
+ * a track left is paused rather than closed, so switching scenes never re-opens or re-buffers a
+ * stream. Sound effects are decoded once into audio clips.
+ */
+public final class Music {
+  // The song without the MP3 encoder delay and padding, read from its LAME tag: 3713 frames of
+  // 1152 samples, starting with 576 samples of encoder delay plus 529 of decoder delay and ending
+  // with 576 of padding. Looping on the whole file would play that silence at every turn.
+  private static final double SONG_SAMPLE_RATE = 44100;
+  private static final int SONG_FIRST_SAMPLE = 576 + 529;
+  private static final int SONG_SAMPLES = 3713 * 1152 - 576 - 576;
+  private static final Duration SONG_START = Duration.seconds(SONG_FIRST_SAMPLE / SONG_SAMPLE_RATE);
+  private static final Duration SONG_END =
+      Duration.seconds((SONG_FIRST_SAMPLE + SONG_SAMPLES) / SONG_SAMPLE_RATE);
+
+  /** The menu music, the game song played quietly. */
+  public static final Track MENU = new Track("song-poopy.mp3", 0.3, SONG_START, SONG_END);
+
+  /** The game music. */
+  public static final Track GAME = new Track("song-poopy.mp3", 1.0, SONG_START, SONG_END);
+
+  private static final Duration CROSSFADE = Duration.millis(800);
+
+  private static Music instance;
+
+  private final Map<String, MediaPlayer> players = new HashMap<>();
+  private final Map<String, AudioClip> effects = new HashMap<>();
+  private final Map<String, Track> requested = new HashMap<>();
+  private MediaPlayer current;
+  private Timeline fade;
+
+  private Music() {
+    // Open and buffer the tracks before they are first played
+    player(MENU);
+    player(GAME);
+  }
+
+  /**
+   * Gets the music of the application, opening the tracks on first call.
+   *
+   * @return the shared music
+   */
+  public static Music get() {
+    if (instance == null) {
+      instance = new Music();
+    }
+    return instance;
+  }
+
+  /**
+   * Crossfades to a track, resuming its player if it was opened before. Tracks of the same file
+   * share their player, only the volume then changes.
+   *
+   * @param track the track to play
+   * @param gain the volume of the session asking for the track, from 0 to 1
+   */
+  public void play(Track track, double gain) {
+    MediaPlayer next = player(track);
+    requested.put(track.fileName, track);
+    setLoop(next, track);
+
+    // Fade from the current volumes, even in the middle of another fade
+    if (fade != null) {
+      fade.stop();
+    }
+    MediaPlayer previous = current;
+    KeyFrame target =
+        previous != null && previous != next
+            ? new KeyFrame(
+                CROSSFADE,
+                new KeyValue(next.volumeProperty(), track.volume * gain),
+                new KeyValue(previous.volumeProperty(), 0.0))
+            : new KeyFrame(CROSSFADE, new KeyValue(next.volumeProperty(), track.volume * gain));
+    fade = new Timeline(target);
+    fade.setOnFinished(
+        event -> {
+          if (previous != null && previous != next) {
+            previous.pause();
+          }
+        });
+    if (next.getStatus() != MediaPlayer.Status.PLAYING) {
+      next.play();
+    }
+    current = next;
+    fade.play();
+  }
+
+  /**
+   * Plays a sound effect over the music.
+   *
+   * @param fileName the file name of the effect in the sounds resources
+   * @param volume the volume from 0 to 1
+   */
+  public void playEffect(String fileName, double volume) {
+    if (volume <= 0) {
+      return;
+    }
+    AudioClip clip = effects.computeIfAbsent(fileName, name -> new AudioClip(resource(name)));
+    clip.play(volume);
+  }
+
+  private MediaPlayer player(Track track) {
+    return players.computeIfAbsent(
+        track.fileName,
+        name -> {
+          MediaPlayer player = new MediaPlayer(new Media(resource(name)));
+          // The player loops by itself between its start and stop times, without a seek
+          player.setCycleCount(MediaPlayer.INDEFINITE);
+          player.setVolume(0.0);
+          // The duration of the file is only known once it is open
+          player.setOnReady(
+              () -> {
+                if (requested.containsKey(name)) {
+                  setLoop(player, requested.get(name));
+                }
+              });
+          return player;
+        });
+  }
+
+  /**
+   * Sets the loop points of a track on its player, which tracks of the same file share.
+   *
+   * @param player the player of the track
+   * @param track the track to play
+   */
+  private static void setLoop(MediaPlayer player, Track track) {
+    // A track without a loop end plays to the end of the file, whatever stop time another track
+    // left on the player
+    Duration loopEnd = track.loopEnd != null ? track.loopEnd : player.getMedia().getDuration();
+    if (!track.loopStart.equals(player.getStartTime())) {
+      player.setStartTime(track.loopStart);
+    }
+    if (!loopEnd.isUnknown() && !loopEnd.equals(player.getStopTime())) {
+      player.setStopTime(loopEnd);
+    }
+  }
+
+  private static String resource(String fileName) {
+    return Music.class.getResource("/sounds/" + fileName).toExternalForm();
+  }
+
+  /** A music track: a file, its volume and its loop points. */
+  public static final class Track {
+    private final String fileName;
+    private final double volume;
+    private final Duration loopStart;
+    private final Duration loopEnd;
+
+    /**
+     * Constructs a track.
+     *
+     * @param fileName the file name of the track in the sounds resources
+     * @param volume the volume of the track from 0 to 1
+     * @param loopStart the time the loop starts at
+     * @param loopEnd the time the loop ends at, or null for the end of the file
+     */
+    public Track(String fileName, double volume, Duration loopStart, Duration loopEnd) {
+      this.fileName = fileName;
+      this.volume = volume;
+      this.loopStart = loopStart;
+      this.loopEnd = loopEnd;
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package rpg.bot;
+
+/** The actions of a bot, one per key handled by {@code RPGModel.actPlayer}. */
+public enum Action {
+  UP,
+  DOWN,
+  LEFT,
+  RIGHT,
+  FART
+}
@@ -0,0 +1,229 @@
+package rpg.bot;
+
+import java.util.SplittableRandom;
+import rpg.RPGMap;
+import rpg.RPGModel;
+import rpg.RPGRules;
+
+/**
+ * A headless simulation of one game following the rules of {@link RPGRules}, where time advances by
+ * one tick per action instead of by a JavaFX timeline. Stepping never allocates, so many
+ * environments can run side by side on every core.
+ */
+public class BotEnvironment {
+  /** The action index of the fart, the other ones being moves. */
+  public static final int FART = Action.FART.ordinal();
+
+  private static final int[] DX = {-1, 1, 0, 0};
+  private static final int[] DY = {0, 0, -1, 1};
+
+  private final MapPool pool;
+  private final SplittableRandom random;
+  private final int actionsPerSecond;
+  private final int maxSteps;
+  private final int startTicks;
+  private final int maxTicks;
+  private final int cooldownTicks;
+  private byte[] tiles = new byte[0];
+  private int[] distance;
+  private int size;
+  private int houseX;
+  private int houseY;
+  private int x;
+  private int y;
+  private int ticks;
+  private int cooldown;
+  private int steps;
+  private boolean done;
+  private boolean won;
+
+  /**
+   * Constructs an environment playing the maps of a pool, one picked at random per episode.
+   *
+   * @param pool the pool of maps, never modified
+   * @param actionsPerSecond the number of actions the player performs per second
+   * @param seed the seed of the environment random generator
+   */
+  public BotEnvironment(MapPool pool, int actionsPerSecond, long seed) {
+    this.pool = pool;
+    this.random = new SplittableRandom(seed);
+    this.actionsPerSecond = actionsPerSecond;
+    // Bonuses are capped at one minute like in the solver, which also bounds episode lengths
+    this.maxTicks = 60 * actionsPerSecond;
+    this.maxSteps = 4 * maxTicks;
+    this.cooldownTicks = RPGModel.FART_COOLDOWN * actionsPerSecond;
+    this.startTicks = RPGModel.TIMER_DURATION * actionsPerSecond;
+    reset();
+  }
+
+  /** Starts a new episode on a random map of the pool. */
+  public final void reset() {
+    int index = random.nextInt(pool.size());
+    RPGMap map = pool.getMap(index);
+    size = map.getSize();
+    if (tiles.length != size * size) {
+      tiles = new byte[size * size];
+    }
+    map.copyTiles(tiles);
+    distance = pool.getDistances(index);
+    for (int i = 0; i < tiles.length; ++i) {
+      if (tiles[i] == RPGMap.HOUSE) {
+        houseX = i / size;
+        houseY = i % size;
+      }
+    }
+
+    x = RPGModel.START_X;
+    y = RPGModel.START_Y;
+    ticks = startTicks;
+    cooldown = 0;
+    steps = 0;
+    done = false;
+    won = false;
+    enter(x, y);
+  }
+
+  /**
+   * Performs an action, as a key release would in the game.
+   *
+   * @param action the index of the action in {@link Policy#ACTIONS}
+   * @return the reward, 1.0 when the action wins the game and 0.0 otherwise
+   */
+  public double step(int action) {
+    if (done) {
+      return 0.0;
+    }
+    boolean fartReady = cooldown == 0;
+    ++steps;
+    --ticks;
+    cooldown = Math.max(0, cooldown - 1);
+
+    if (action == FART) {
+      // A fart on cooldown only wastes the time of pressing the key
+      if (fartReady) {
+        cooldown = cooldownTicks;
+        ticks = RPGRules.fart(ticks, actionsPerSecond, maxTicks, random.nextDouble());
+      }
+    } else {
+      int nx = x + DX[action];
+      int ny = y + DY[action];
+      if (!inBounds(nx, ny) || RPGRules.isObstacle(tiles[nx * size + ny])) {
+        ticks = RPGRules.bump(ticks, actionsPerSecond);
+      } else if (tiles[nx * size + ny] == RPGMap.HOUSE) {
+        done = true;
+        won = true;
+        return 1.0;
+      } else {
+        x = nx;
+        y = ny;
+        enter(x, y);
+      }
+    }
+
+    if (RPGRules.isTimeUp(ticks) || steps >= maxSteps) {
+      done = true;
+    }
+    return 0.0;
+  }
+
+  /** Takes the drug and clears the tile the player enters. */
+  private void enter(int x, int y) {
+    if (tiles[x * size + y] == RPGMap.DRUG) {
+      ticks = RPGRules.takeDrug(ticks, actionsPerSecond, maxTicks);
+    }
+    tiles[x * size + y] = RPGMap.GRASS;
+  }
+
+  private boolean inBounds(int x, int y) {
+    return x >= 0 && x < size && y >= 0 && y < size;
+  }
+
+  /**
+   * Gets the tile relative to the player.
+   *
+   * @param dx the x offset from the player
+   * @param dy the y offset from the player
+   * @return the tile type, a rock outside of the grid
+   */
+  public byte getTile(int dx, int dy) {
+    int tx = x + dx;
+    int ty = y + dy;
+    return inBounds(tx, ty) ? tiles[tx * size + ty] : RPGMap.ROCK;
+  }
+
+  /**
+   * Gets the number of moves to the house from a tile relative to the player.
+   *
+   * @param dx the x offset from the player
+   * @param dy the y offset from the player
+   * @return the distance to the house, -1 if unreachable or outside of the grid
+   */
+  public int getHouseDistance(int dx, int dy) {
+    int tx = x + dx;
+    int ty = y + dy;
+    return inBounds(tx, ty) ? distance[tx * size + ty] : -1;
+  }
+
+  /**
+   * Gets the x offset from the player to the house.
+   *
+   * @return the house x-coordinate minus the player x-coordinate
+   */
+  public int getHouseDx() {
+    return houseX - x;
+  }
+
+  /**
+   * Gets the y offset from the player to the house.
+   *
+   * @return the house y-coordinate minus the player y-coordinate
+   */
+  public int getHouseDy() {
+    return houseY - y;
+  }
+
+  /**
+   * Gets the remaining time on the timer.
+   *
+   * @return the ticks left before losing
+   */
+  public int getTimerTicks() {
+    return ticks;
+  }
+
+  /**
+   * Gets the remaining fart cooldown.
+   *
+   * @return the ticks left before farting again, 0 if it is available
+   */
+  public int getCooldownTicks() {
+    return cooldown;
+  }
+
+  /**
+   * Checks if the episode is over.
+   *
+   * @return true if the game is won or lost, false otherwise
+   */
+  public boolean isDone() {
+    return done;
+  }
+
+  /**
+   * Checks if the episode ended in the house.
+   *
+   * @return true if the game is won, false otherwise
+   */
+  public boolean isWon() {
+    return won;
+  }
+
+  /**
+   * Gets the number of actions performed in the episode.
+   *
+   * @return the number of steps
+   */
+  public int getSteps() {
+    return steps;
+  }
+}
@@ -0,0 +1,165 @@
+package rpg.bot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import rpg.solver.RPGSolver;
+
+/**
+ * Trains and evaluates bot policies without any display. Every core runs its own batch of
+ * environments; Q-learning workers train private copies of the table that are averaged after each
+ * epoch and checkpointed to a binary file.
+ */
+public class BotHarness {
+  private static final int MAP_POOL_SIZE = 1024;
+  private static final int ENVIRONMENTS_PER_WORKER = 64;
+  private static final int EPOCHS = 20;
+  private static final int ACTIONS_PER_SECOND = RPGSolver.ACTIONS_PER_SECOND;
+
+  private final MapPool pool;
+  private final int workers;
+
+  /**
+   * Constructs a harness over a pool of generated maps.
+   *
+   * @param seed the seed of the first map of the pool
+   * @param workers the number of parallel workers
+   */
+  public BotHarness(long seed, int workers) {
+    this.workers = workers;
+    this.pool = new MapPool(MAP_POOL_SIZE, seed);
+  }
+
+  /**
+   * Trains and evaluates the bots, then writes the Q-table checkpoint.
+   *
+   * @param args the number of training steps and the checkpoint file, both optional
+   * @throws IOException if the checkpoint cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    long steps = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000L;
+    Path checkpoint = Paths.get(args.length > 1 ? args[1] : "bot-qtable.bin");
+    BotHarness harness = new BotHarness(0, Runtime.getRuntime().availableProcessors());
+
+    QTable table = new QTable(QLearningPolicy.STATE_BITS, Policy.ACTIONS.length);
+    if (Files.exists(checkpoint)) {
+      table.load(checkpoint);
+      System.out.println("Resuming from " + checkpoint);
+    }
+    harness.train(table, steps);
+    table.save(checkpoint);
+    System.out.println("Checkpoint written to " + checkpoint);
+
+    int episodes = 100_000;
+    harness.report("greedy", harness.evaluate(GreedyPolicy::new, episodes), episodes);
+    harness.report(
+        "pathfinding", harness.evaluate(w -> new PathfindingPolicy(), episodes), episodes);
+    harness.report(
+        "q-learning", harness.evaluate(w -> new QLearningPolicy(table, 0, w), episodes), episodes);
+  }
+
+  /**
+   * Trains a Q-table by epsilon-greedy Q-learning, with exploration decaying over the epochs.
+   *
+   * @param table the table to train, updated in place
+   * @param steps the total number of environment steps over all workers
+   */
+  public void train(QTable table, long steps) {
+    QTable[] locals = new QTable[workers];
+    BotEnvironment[][] environments = new BotEnvironment[workers][ENVIRONMENTS_PER_WORKER];
+    for (int w = 0; w < workers; ++w) {
+      locals[w] = new QTable(QLearningPolicy.STATE_BITS, Policy.ACTIONS.length);
+      for (int e = 0; e < ENVIRONMENTS_PER_WORKER; ++e) {
+        environments[w][e] = new BotEnvironment(pool, ACTIONS_PER_SECOND, (long) w << 32 | e);
+      }
+    }
+
+    long stepsPerWorker = steps / ((long) EPOCHS * workers);
+    long start = System.nanoTime();
+    for (int epoch = 0; epoch < EPOCHS; ++epoch) {
+      double epsilon = 0.3 * (EPOCHS - epoch) / EPOCHS;
+      int seed = epoch;
+      for (QTable local : locals) {
+        table.copyTo(local);
+      }
+      IntStream.range(0, workers)
+          .parallel()
+          .forEach(
+              w -> {
+                QLearningPolicy policy = new QLearningPolicy(locals[w], epsilon, seed * 31L + w);
+                trainWorker(policy, environments[w], stepsPerWorker);
+              });
+      table.average(locals);
+    }
+
+    double minutes = (System.nanoTime() - start) / 60e9;
+    long total = stepsPerWorker * EPOCHS * workers;
+    System.out.println(
+        String.format(
+            "Trained %d steps on %d workers, %.1fM steps/min",
+            total, workers, total / minutes / 1e6));
+  }
+
+  private static void trainWorker(
+      QLearningPolicy policy, BotEnvironment[] environments, long steps) {
+    for (long step = 0; step < steps; ) {
+      // Step every environment of the batch in turn
+      for (BotEnvironment environment : environments) {
+        int state = QLearningPolicy.encode(environment);
+        int action = policy.choose(state);
+        double reward = environment.step(action);
+        boolean done = environment.isDone();
+        policy.learn(state, action, reward, done ? 0 : QLearningPolicy.encode(environment), done);
+        if (done) {
+          environment.reset();
+        }
+        ++step;
+      }
+    }
+  }
+
+  /**
+   * Plays episodes with a policy on every worker.
+   *
+   * @param policies creates the policy of a worker from its index
+   * @param episodes the total number of episodes over all workers
+   * @return the number of won episodes and the total number of steps
+   */
+  public long[] evaluate(IntFunction<Policy> policies, int episodes) {
+    long[][] results = new long[workers][2];
+    int episodesPerWorker = episodes / workers + 1;
+    IntStream.range(0, workers)
+        .parallel()
+        .forEach(
+            w -> {
+              Policy policy = policies.apply(w);
+              BotEnvironment environment = new BotEnvironment(pool, ACTIONS_PER_SECOND, ~w);
+              for (int episode = 0; episode < episodesPerWorker; ++episode) {
+                environment.reset();
+                while (!environment.isDone()) {
+                  environment.step(policy.act(environment));
+                }
+                results[w][0] += environment.isWon() ? 1 : 0;
+                results[w][1] += environment.getSteps();
+              }
+            });
+
+    long[] total = new long[2];
+    for (long[] result : results) {
+      total[0] += result[0];
+      total[1] += result[1];
+    }
+    return total;
+  }
+
+  private void report(String name, long[] result, int episodes) {
+    int played = (episodes / workers + 1) * workers;
+    System.out.println(
+        String.format(
+            "%-12s win rate %.3f, %.1f steps per episode",
+            name, (double) result[0] / played, (double) result[1] / played));
+  }
+}
@@ -0,0 +1,54 @@
+package rpg.bot;
+
+import java.util.SplittableRandom;
+import rpg.RPGMap;
+
+/**
+ * A policy that only looks at the neighbouring tiles: it steps towards the house when it can, takes
+ * drugs next to it, and farts once the timer is shorter than the straight line distance.
+ */
+public class GreedyPolicy implements Policy {
+  private static final int[] DX = {-1, 1, 0, 0};
+  private static final int[] DY = {0, 0, -1, 1};
+
+  private final SplittableRandom random;
+
+  /**
+   * Constructs a greedy policy.
+   *
+   * @param seed the seed used to pick a move when no move gets closer to the house
+   */
+  public GreedyPolicy(long seed) {
+    this.random = new SplittableRandom(seed);
+  }
+
+  @Override
+  public int act(BotEnvironment observation) {
+    int dx = observation.getHouseDx();
+    int dy = observation.getHouseDy();
+    int straightDistance = Math.abs(dx) + Math.abs(dy);
+    if (observation.getCooldownTicks() == 0 && observation.getTimerTicks() <= straightDistance) {
+      return BotEnvironment.FART;
+    }
+
+    int fallback = -1;
+    int freeMoves = 0;
+    for (int action = 0; action < DX.length; ++action) {
+      byte tile = observation.getTile(DX[action], DY[action]);
+      if (tile == RPGMap.HOUSE || tile == RPGMap.DRUG) {
+        return action;
+      }
+      if (tile == RPGMap.GRASS) {
+        if (DX[action] * dx > 0 || DY[action] * dy > 0) {
+          return action;
+        }
+        // Reservoir sampling of a random free move, without allocating a candidate list
+        ++freeMoves;
+        if (random.nextInt(freeMoves) == 0) {
+          fallback = action;
+        }
+      }
+    }
+    return fallback >= 0 ? fallback : random.nextInt(DX.length);
+  }
+}
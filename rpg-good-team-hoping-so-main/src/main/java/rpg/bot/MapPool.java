@@ -0,0 +1,57 @@
+package rpg.bot;
+
+import rpg.RPGMap;
+import rpg.RPGModel;
+
+/**
+ * A pool of generated maps with their house distances from the start tile, shared read-only by
+ * every environment of the harness and of the tournament.
+ */
+public class MapPool {
+  private final RPGMap[] maps;
+  private final int[][] distances;
+
+  /**
+   * Generates a pool of consecutive maps.
+   *
+   * @param size the number of maps
+   * @param seed the seed of the first map of the pool
+   */
+  public MapPool(int size, long seed) {
+    this.maps = new RPGMap[size];
+    this.distances = new int[size][];
+    for (int i = 0; i < size; ++i) {
+      maps[i] = RPGMap.generate(RPGModel.SIZE, seed + i);
+      distances[i] = maps[i].houseDistances(RPGModel.START_X, RPGModel.START_Y);
+    }
+  }
+
+  /**
+   * Gets the number of maps of the pool.
+   *
+   * @return the pool size
+   */
+  public int size() {
+    return maps.length;
+  }
+
+  /**
+   * Gets a map of the pool.
+   *
+   * @param index the index of the map
+   * @return the map, never to be modified
+   */
+  public RPGMap getMap(int index) {
+    return maps[index];
+  }
+
+  /**
+   * Gets the house distances of a map of the pool.
+   *
+   * @param index the index of the map
+   * @return the distances as computed by {@code houseDistances} from the start tile
+   */
+  public int[] getDistances(int index) {
+    return distances[index];
+  }
+}
@@ -0,0 +1,34 @@
+package rpg.bot;
+
+import rpg.RPGMap;
+
+/**
+ * A policy following the shortest path to the house around obstacles, preferring drugs between
+ * equally short moves, and farting only when the timer cannot last until the house.
+ */
+public class PathfindingPolicy implements Policy {
+  private static final int[] DX = {-1, 1, 0, 0};
+  private static final int[] DY = {0, 0, -1, 1};
+
+  @Override
+  public int act(BotEnvironment observation) {
+    int distance = observation.getHouseDistance(0, 0);
+    if (observation.getCooldownTicks() == 0 && observation.getTimerTicks() < distance) {
+      return BotEnvironment.FART;
+    }
+
+    int best = BotEnvironment.FART;
+    int bestDistance = Integer.MAX_VALUE;
+    boolean bestDrug = false;
+    for (int action = 0; action < DX.length; ++action) {
+      int next = observation.getHouseDistance(DX[action], DY[action]);
+      boolean drug = observation.getTile(DX[action], DY[action]) == RPGMap.DRUG;
+      if (next >= 0 && (next < bestDistance || (next == bestDistance && drug && !bestDrug))) {
+        best = action;
+        bestDistance = next;
+        bestDrug = drug;
+      }
+    }
+    return best;
+  }
+}
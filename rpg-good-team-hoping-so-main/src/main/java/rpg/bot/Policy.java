@@ -0,0 +1,15 @@
+package rpg.bot;
+
+/** A bot strategy choosing the next key the player presses. */
+public interface Policy {
+  /** The actions in the order used to index them. */
+  Action[] ACTIONS = Action.values();
+
+  /**
+   * Chooses the action to perform in the current state of the environment.
+   *
+   * @param observation the environment, read through its observation getters only
+   * @return the index of the action in {@link #ACTIONS}
+   */
+  int act(BotEnvironment observation);
+}
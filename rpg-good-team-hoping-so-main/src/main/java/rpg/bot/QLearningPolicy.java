@@ -0,0 +1,105 @@
+package rpg.bot;
+
+import java.util.SplittableRandom;
+import rpg.RPGRules;
+
+/**
+ * A tabular Q-learning policy. The observation is packed into a small int: which of the four
+ * neighbouring tiles are blocked, the offset to the house, the timer and whether the fart is ready.
+ */
+public class QLearningPolicy implements Policy {
+  /** The number of bits of a packed state. */
+  public static final int STATE_BITS = 17;
+
+  private static final int[] DX = {-1, 1, 0, 0};
+  private static final int[] DY = {0, 0, -1, 1};
+  private static final int MAX_TIMER = 15;
+  private static final int MAX_OFFSET = 7;
+
+  private final QTable table;
+  private final SplittableRandom random;
+  private final float learningRate;
+  private final float discount;
+  private double epsilon;
+
+  /**
+   * Constructs a policy reading and updating a table.
+   *
+   * @param table the action values, with {@link #STATE_BITS} state bits
+   * @param epsilon the probability of exploring a random action
+   * @param seed the seed of the exploration random generator
+   */
+  public QLearningPolicy(QTable table, double epsilon, long seed) {
+    this.table = table;
+    this.epsilon = epsilon;
+    this.random = new SplittableRandom(seed);
+    this.learningRate = 0.1f;
+    this.discount = 0.97f;
+  }
+
+  /**
+   * Sets the probability of exploring a random action.
+   *
+   * @param epsilon the exploration probability, 0 to always exploit the table
+   */
+  public void setEpsilon(double epsilon) {
+    this.epsilon = epsilon;
+  }
+
+  @Override
+  public int act(BotEnvironment observation) {
+    return choose(encode(observation));
+  }
+
+  /**
+   * Chooses an action in a packed state, exploring with probability epsilon.
+   *
+   * @param state the packed state
+   * @return the index of the action
+   */
+  public int choose(int state) {
+    if (epsilon > 0 && random.nextDouble() < epsilon) {
+      return random.nextInt(ACTIONS.length);
+    }
+    return table.bestAction(state);
+  }
+
+  /**
+   * Updates the table from one transition.
+   *
+   * @param state the packed state before the action
+   * @param action the index of the action
+   * @param reward the reward of the action
+   * @param nextState the packed state after the action, ignored if the episode is over
+   * @param done whether the action ended the episode
+   */
+  public void learn(int state, int action, double reward, int nextState, boolean done) {
+    float target = (float) reward + (done ? 0.0f : discount * table.bestValue(nextState));
+    float value = table.get(state, action);
+    table.set(state, action, value + learningRate * (target - value));
+  }
+
+  /**
+   * Packs the observation of an environment into a state of {@link #STATE_BITS} bits.
+   *
+   * @param observation the environment
+   * @return the packed state
+   */
+  public static int encode(BotEnvironment observation) {
+    int blocked = 0;
+    for (int d = 0; d < DX.length; ++d) {
+      byte tile = observation.getTile(DX[d], DY[d]);
+      blocked = blocked << 1 | (RPGRules.isObstacle(tile) ? 1 : 0);
+    }
+    int dx = offsetCode(observation.getHouseDx());
+    int dy = offsetCode(observation.getHouseDy());
+    int timer = Math.max(0, Math.min(MAX_TIMER, observation.getTimerTicks()));
+    int fartReady = observation.getCooldownTicks() == 0 ? 1 : 0;
+    return (((blocked << 4 | dx) << 4 | dy) << 4 | timer) << 1 | fartReady;
+  }
+
+  /** Clamps an offset to the house into 4 bits. */
+  private static int offsetCode(int offset) {
+    return Math.max(-MAX_OFFSET, Math.min(MAX_OFFSET, offset)) + MAX_OFFSET;
+  }
+}
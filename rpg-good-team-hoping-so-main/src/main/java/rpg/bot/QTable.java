@@ -0,0 +1,144 @@
+package rpg.bot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A dense table of action values indexed by packed state, stored in one primitive array so that
+ * lookups and updates never allocate.
+ */
+public class QTable {
+  private static final int MAGIC = 0x51544231; // "QTB1"
+
+  private final int stateCount;
+  private final int actionCount;
+  private final float[] values;
+
+  /**
+   * Constructs a table with every value set to 0.
+   *
+   * @param stateBits the number of bits of a packed state
+   * @param actionCount the number of actions
+   */
+  public QTable(int stateBits, int actionCount) {
+    this.stateCount = 1 << stateBits;
+    this.actionCount = actionCount;
+    this.values = new float[stateCount * actionCount];
+  }
+
+  /**
+   * Gets the value of an action in a state.
+   *
+   * @param state the packed state
+   * @param action the index of the action
+   * @return the estimated value
+   */
+  public float get(int state, int action) {
+    return values[state * actionCount + action];
+  }
+
+  /**
+   * Sets the value of an action in a state.
+   *
+   * @param state the packed state
+   * @param action the index of the action
+   * @param value the estimated value
+   */
+  public void set(int state, int action, float value) {
+    values[state * actionCount + action] = value;
+  }
+
+  /**
+   * Gets the action with the highest value in a state, the first one on ties.
+   *
+   * @param state the packed state
+   * @return the index of the best action
+   */
+  public int bestAction(int state) {
+    int offset = state * actionCount;
+    int best = 0;
+    for (int action = 1; action < actionCount; ++action) {
+      if (values[offset + action] > values[offset + best]) {
+        best = action;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Gets the highest action value in a state.
+   *
+   * @param state the packed state
+   * @return the value of the best action
+   */
+  public float bestValue(int state) {
+    return get(state, bestAction(state));
+  }
+
+  /**
+   * Replaces the values of this table by the average of other tables of the same shape, used to
+   * merge tables trained in parallel.
+   *
+   * @param tables the tables to average
+   */
+  public void average(QTable[] tables) {
+    float scale = 1.0f / tables.length;
+    for (int i = 0; i < values.length; ++i) {
+      float sum = 0.0f;
+      for (QTable table : tables) {
+        sum += table.values[i];
+      }
+      values[i] = sum * scale;
+    }
+  }
+
+  /**
+   * Copies the values of this table into another table of the same shape.
+   *
+   * @param destination the table receiving the values
+   */
+  public void copyTo(QTable destination) {
+    System.arraycopy(values, 0, destination.values, 0, values.length);
+  }
+
+  /**
+   * Writes the table to a binary checkpoint file.
+   *
+   * @param path the checkpoint file
+   * @throws IOException if the file cannot be written
+   */
+  public void save(Path path) throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(stateCount);
+      out.writeInt(actionCount);
+      for (float value : values) {
+        out.writeFloat(value);
+      }
+    }
+  }
+
+  /**
+   * Reads the table from a binary checkpoint file written by {@link #save}.
+   *
+   * @param path the checkpoint file
+   * @throws IOException if the file cannot be read or does not match the shape of the table
+   */
+  public void load(Path path) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC || in.readInt() != stateCount || in.readInt() != actionCount) {
+        throw new IOException("Checkpoint " + path + " does not match the table shape");
+      }
+      for (int i = 0; i < values.length; ++i) {
+        values[i] = in.readFloat();
+      }
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package rpg.bot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import rpg.solver.RPGSolver;
+
+/**
+ * Runs a headless tournament between the bot policies. Each worker of the pool steps its own slice
+ * of game instances in turn, every instance having its own environment, random generator and policy
+ * state, so that the number of games per second scales with the cores. Every policy plays the same
+ * instances with the same seeds.
+ */
+public class Tournament {
+  private static final int MAP_POOL_SIZE = 1024;
+  private static final int INSTANCES_PER_WORKER = 256;
+  private static final int ACTIONS_PER_SECOND = RPGSolver.ACTIONS_PER_SECOND;
+
+  private final MapPool pool;
+  private final int workers;
+
+  /**
+   * Constructs a tournament over a pool of generated maps.
+   *
+   * @param seed the seed of the first map of the pool
+   * @param workers the number of parallel workers
+   */
+  public Tournament(long seed, int workers) {
+    this.workers = workers;
+    this.pool = new MapPool(MAP_POOL_SIZE, seed);
+  }
+
+  /**
+   * Plays the tournament and prints the ranking.
+   *
+   * @param args the number of games per policy and the Q-table checkpoint, both optional
+   * @throws IOException if the checkpoint cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    Path checkpoint = Paths.get(args.length > 1 ? args[1] : "bot-qtable.bin");
+    Tournament tournament = new Tournament(0, Runtime.getRuntime().availableProcessors());
+
+    QTable table = new QTable(QLearningPolicy.STATE_BITS, Policy.ACTIONS.length);
+    if (Files.exists(checkpoint)) {
+      table.load(checkpoint);
+    } else {
+      System.out.println("No checkpoint at " + checkpoint + ", the Q-learning bot is untrained");
+    }
+
+    String[] names = {"greedy", "pathfinding", "q-learning"};
+    List<IntFunction<Policy>> policies =
+        List.of(
+            GreedyPolicy::new, i -> new PathfindingPolicy(), i -> new QLearningPolicy(table, 0, i));
+    long[][] results = new long[names.length][];
+    for (int p = 0; p < names.length; ++p) {
+      long start = System.nanoTime();
+      results[p] = tournament.play(policies.get(p), games);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.println(
+          String.format(
+              "%-12s %d games in %.2f s (%.0f games/s)",
+              names[p], results[p][2], seconds, results[p][2] / seconds));
+    }
+
+    // Rank by win rate, then by the fewest steps
+    Integer[] ranking = {0, 1, 2};
+    Arrays.sort(
+        ranking,
+        Comparator.<Integer>comparingDouble(p -> -(double) results[p][0] / results[p][2])
+            .thenComparingDouble(p -> (double) results[p][1] / results[p][2]));
+    for (int rank = 0; rank < ranking.length; ++rank) {
+      long[] result = results[ranking[rank]];
+      System.out.println(
+          String.format(
+              "%d. %-12s win rate %.3f, %.1f steps per game",
+              rank + 1,
+              names[ranking[rank]],
+              (double) result[0] / result[2],
+              (double) result[1] / result[2]));
+    }
+  }
+
+  /**
+   * Plays games with a policy on every worker, each stepping its instances in turn.
+   *
+   * @param policies creates the policy of an instance from its index
+   * @param games the total number of games over all workers
+   * @return the number of won games, the total number of steps and the number of games
+   */
+  public long[] play(IntFunction<Policy> policies, int games) {
+    long[][] results = new long[workers][3];
+    int gamesPerInstance = Math.max(1, games / (workers * INSTANCES_PER_WORKER));
+    IntStream.range(0, workers)
+        .parallel()
+        .forEach(
+            w -> {
+              BotEnvironment[] environments = new BotEnvironment[INSTANCES_PER_WORKER];
+              Policy[] instancePolicies = new Policy[INSTANCES_PER_WORKER];
+              int[] played = new int[INSTANCES_PER_WORKER];
+              for (int i = 0; i < INSTANCES_PER_WORKER; ++i) {
+                int instance = w * INSTANCES_PER_WORKER + i;
+                environments[i] = new BotEnvironment(pool, ACTIONS_PER_SECOND, instance);
+                instancePolicies[i] = policies.apply(instance);
+              }
+
+              int active = INSTANCES_PER_WORKER;
+              while (active > 0) {
+                for (int i = 0; i < INSTANCES_PER_WORKER; ++i) {
+                  if (played[i] == gamesPerInstance) {
+                    continue;
+                  }
+                  BotEnvironment environment = environments[i];
+                  environment.step(instancePolicies[i].act(environment));
+                  if (environment.isDone()) {
+                    results[w][0] += environment.isWon() ? 1 : 0;
+                    results[w][1] += environment.getSteps();
+                    results[w][2] += 1;
+                    environment.reset();
+                    if (++played[i] == gamesPerInstance) {
+                      --active;
+                    }
+                  }
+                }
+              }
+            });
+
+    long[] total = new long[3];
+    for (long[] result : results) {
+      for (int i = 0; i < total.length; ++i) {
+        total[i] += result[i];
+      }
+    }
+    return total;
+  }
+}
@@ -0,0 +1,79 @@
+package rpg.endless;
+
+/**
+ * A square chunk of the endless world. A generator thread fills its tiles before publishing it,
+ * after which only the game thread reads and changes them.
+ */
+public class Chunk {
+  /** The width and height of a chunk in tiles. */
+  public static final int SIZE = 32;
+
+  /** The memory a chunk takes, its tiles and the bookkeeping of the world. */
+  public static final int BYTES = SIZE * SIZE + 128;
+
+  private final int chunkX;
+  private final int chunkY;
+  private final byte[] tiles = new byte[SIZE * SIZE];
+
+  /**
+   * Constructs a chunk of grass tiles.
+   *
+   * @param chunkX the x-coordinate of the chunk, in chunks
+   * @param chunkY the y-coordinate of the chunk, in chunks
+   */
+  public Chunk(int chunkX, int chunkY) {
+    this.chunkX = chunkX;
+    this.chunkY = chunkY;
+  }
+
+  /**
+   * Gets the x-coordinate of the chunk.
+   *
+   * @return the x-coordinate in chunks
+   */
+  public int getChunkX() {
+    return chunkX;
+  }
+
+  /**
+   * Gets the y-coordinate of the chunk.
+   *
+   * @return the y-coordinate in chunks
+   */
+  public int getChunkY() {
+    return chunkY;
+  }
+
+  /**
+   * Gets a tile of the chunk.
+   *
+   * @param x the x-coordinate of the tile in the chunk
+   * @param y the y-coordinate of the tile in the chunk
+   * @return the tile type, one of the RPGMap constants
+   */
+  public byte getTile(int x, int y) {
+    return tiles[x * SIZE + y];
+  }
+
+  /**
+   * Sets a tile of the chunk.
+   *
+   * @param x the x-coordinate of the tile in the chunk
+   * @param y the y-coordinate of the tile in the chunk
+   * @param tile the tile type, one of the RPGMap constants
+   */
+  public void setTile(int x, int y, byte tile) {
+    tiles[x * SIZE + y] = tile;
+  }
+
+  /**
+   * Gets the key of a chunk in the world.
+   *
+   * @param chunkX the x-coordinate of the chunk
+   * @param chunkY the y-coordinate of the chunk
+   * @return the chunk key
+   */
+  public static long key(int chunkX, int chunkY) {
+    return (long) chunkX << 32 | (chunkY & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,96 @@
+package rpg.endless;
+
+import java.util.Random;
+import rpg.RPGMap;
+import rpg.RPGRules;
+
+/**
+ * Generates the chunks of the endless world from the world seed alone, so that any thread can
+ * generate any chunk in any order and get the same terrain.
+ *
+ * <p>The tiles follow the spawn rules of the fixed maps: 10% rocks, 10% panels and 5% drugs, with
+ * no house. Every chunk then carves a corridor from its center to a gate on each of its four
+ * borders. Two neighbouring chunks derive the gate of their shared border from the same seed, so
+ * the corridors join and every chunk center can be reached from every other.
+ */
+public final class ChunkGenerator {
+  private static final int CENTER = Chunk.SIZE / 2;
+
+  private ChunkGenerator() {}
+
+  /**
+   * Generates a chunk.
+   *
+   * @param worldSeed the seed of the world
+   * @param chunkX the x-coordinate of the chunk, in chunks
+   * @param chunkY the y-coordinate of the chunk, in chunks
+   * @return the generated chunk
+   */
+  public static Chunk generate(long worldSeed, int chunkX, int chunkY) {
+    Chunk chunk = new Chunk(chunkX, chunkY);
+    Random random = new Random(mix(worldSeed, chunkX, chunkY, 0));
+
+    // The spawn rules of RPGMap.generate
+    for (int i = 0; i < Chunk.SIZE; ++i) {
+      for (int j = 0; j < Chunk.SIZE; ++j) {
+        if (random.nextDouble() < 0.1) {
+          chunk.setTile(i, j, RPGMap.ROCK);
+        } else if (random.nextDouble() < 0.1) {
+          chunk.setTile(i, j, RPGMap.PANEL);
+        } else if (random.nextDouble() < 0.05) {
+          chunk.setTile(i, j, RPGMap.DRUG);
+        }
+      }
+    }
+
+    // The gates of the lower and right borders are this chunk's, the others its neighbours'
+    carve(chunk, 0, gate(worldSeed, chunkX - 1, chunkY, 1));
+    carve(chunk, Chunk.SIZE - 1, gate(worldSeed, chunkX, chunkY, 1));
+    carveRow(chunk, gate(worldSeed, chunkX, chunkY - 1, 2), 0);
+    carveRow(chunk, gate(worldSeed, chunkX, chunkY, 2), Chunk.SIZE - 1);
+    return chunk;
+  }
+
+  /** Carves from the center along its column to a border row, then along that row to the gate. */
+  private static void carve(Chunk chunk, int borderX, int gateY) {
+    for (int x = Math.min(CENTER, borderX); x <= Math.max(CENTER, borderX); ++x) {
+      clear(chunk, x, CENTER);
+    }
+    for (int y = Math.min(CENTER, gateY); y <= Math.max(CENTER, gateY); ++y) {
+      clear(chunk, borderX, y);
+    }
+  }
+
+  /** Carves from the center along its row to a border column, then along that column. */
+  private static void carveRow(Chunk chunk, int gateX, int borderY) {
+    for (int y = Math.min(CENTER, borderY); y <= Math.max(CENTER, borderY); ++y) {
+      clear(chunk, CENTER, y);
+    }
+    for (int x = Math.min(CENTER, gateX); x <= Math.max(CENTER, gateX); ++x) {
+      clear(chunk, x, borderY);
+    }
+  }
+
+  /** Removes an obstacle, drugs stay on the corridor. */
+  private static void clear(Chunk chunk, int x, int y) {
+    byte tile = chunk.getTile(x, y);
+    if (RPGRules.isObstacle(tile)) {
+      chunk.setTile(x, y, RPGMap.GRASS);
+    }
+  }
+
+  /**
+   * Gets the gate of the lower (side 1) or right (side 2) border of a chunk, away from the corners.
+   */
+  private static int gate(long worldSeed, int chunkX, int chunkY, int side) {
+    return 1 + (int) ((mix(worldSeed, chunkX, chunkY, side) >>> 1) % (Chunk.SIZE - 2));
+  }
+
+  /** Derives a seed from the world seed, a chunk and a salt, with the SplitMix64 finalizer. */
+  private static long mix(long worldSeed, int chunkX, int chunkY, int salt) {
+    long value = worldSeed ^ Chunk.key(chunkX, chunkY) * 0x9E3779B97F4A7C15L ^ salt;
+    value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+    value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+    return value ^ (value >>> 31);
+  }
+}
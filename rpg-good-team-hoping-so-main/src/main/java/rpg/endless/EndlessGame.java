@@ -0,0 +1,277 @@
+package rpg.endless;
+
+import java.util.Random;
+import javafx.animation.AnimationTimer;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.TilePane;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+import rpg.RPGController;
+import rpg.RPGMap;
+import rpg.RPGModel;
+import rpg.RPGRules;
+import rpg.SessionHost;
+import rpg.audio.Music;
+import rpg.ui.DevReloader;
+import rpg.ui.RPGMenuView;
+import rpg.ui.SpriteAnimator;
+import rpg.ui.SpriteAtlas;
+import rpg.ui.TileLayers;
+
+/**
+ * The endless "keep running" mode: no house, the terrain of an EndlessWorld streams in as the
+ * player runs, drugs buy time and the run ends when the timer does, following the bump, drug and
+ * timer rules of RPGRules. The board is a window of the world centered on the player, redrawn from
+ * the live chunks after every move. The menu start button starts a new run on a new world.
+ */
+public class EndlessGame implements SessionHost {
+  // The memory of the live chunks, about 900 chunks of 32x32 tiles
+  private static final int BUDGET_BYTES = 1 << 20;
+  private static final int VIEW_SIZE = RPGModel.SIZE;
+  private static final int CENTER = VIEW_SIZE / 2;
+  private static final int PANIC_SECONDS = 5;
+  private static final double UNLOADED_OPACITY = 0.2;
+
+  private final RPGController menuController;
+  private final Random random;
+  private Stage stage;
+  private EndlessWorld world;
+  private StackPane[][] sprites;
+  private TileLayers layers;
+  private SpriteAnimator animator;
+  private int playerAnimation;
+  private AnimationTimer publisher;
+  private Timeline timer;
+  private Label timerLabel;
+  private Label distanceLabel;
+  private int timerSeconds;
+  private int x;
+  private int y;
+  private int distance;
+  private boolean running;
+
+  /**
+   * Constructs the endless mode.
+   *
+   * @param menuController the controller of the menu shown after each run
+   * @param seed the seed of the worlds
+   */
+  public EndlessGame(RPGController menuController, long seed) {
+    this.menuController = menuController;
+    this.random = new Random(seed);
+  }
+
+  @Override
+  public void start(Stage stage) {
+    this.stage = stage;
+    world =
+        new EndlessWorld(
+            random.nextLong(), BUDGET_BYTES, Runtime.getRuntime().availableProcessors() - 1);
+    // The player starts at the center of a chunk, on its corridors
+    x = Chunk.SIZE / 2;
+    y = Chunk.SIZE / 2;
+    distance = 0;
+    timerSeconds = RPGModel.TIMER_DURATION;
+    running = true;
+    world.update(x, y, 0, 0);
+
+    Scene scene = new Scene(createRoot());
+    scene.getStylesheets().add(DevReloader.stylesheet());
+    scene.setOnKeyReleased(event -> handleKey(event.getCode()));
+    stage.setScene(scene);
+    stage.show();
+
+    Music.get().play(Music.GAME, menuController.getVolume());
+    animator.start();
+    // Publish the generated chunks every pulse, redrawing the board when one arrives
+    publisher =
+        new AnimationTimer() {
+          @Override
+          public void handle(long now) {
+            if (world.publish() > 0) {
+              redraw();
+            }
+          }
+        };
+    publisher.start();
+    timer = new Timeline(new KeyFrame(Duration.seconds(1), event -> tick()));
+    timer.setCycleCount(Timeline.INDEFINITE);
+    timer.play();
+    redraw();
+  }
+
+  @Override
+  public void sessionEnded(RPGController session, boolean gamePlayed, boolean gameWon) {
+    // The menu controller never starts a session of its own in endless mode
+  }
+
+  private VBox createRoot() {
+    TilePane tiles = new TilePane();
+    tiles.setPrefColumns(VIEW_SIZE);
+    tiles.setPrefRows(VIEW_SIZE);
+    tiles.setTileAlignment(Pos.CENTER);
+    tiles.setStyle("-fx-background-color: #000000;");
+    sprites = new StackPane[VIEW_SIZE][VIEW_SIZE];
+    for (int i = 0; i < VIEW_SIZE; ++i) {
+      for (int j = 0; j < VIEW_SIZE; ++j) {
+        sprites[i][j] = new StackPane();
+        sprites[i][j].setStyle("-fx-background-color: #008000;");
+        tiles.getChildren().add(sprites[i][j]);
+      }
+    }
+    SpriteAtlas atlas = SpriteAtlas.get();
+    layers = new TileLayers(sprites, atlas);
+    animator = new SpriteAnimator(atlas);
+    // The player stays at the center of the board, the world moves under it
+    playerAnimation =
+        animator.add(
+            layers.moveActor(CENTER, CENTER, SpriteAtlas.PLAYER),
+            SpriteAtlas.PLAYER,
+            1,
+            SpriteAtlas.HOUSE_FRAME_NANOS);
+
+    timerLabel = new Label();
+    timerLabel.getStyleClass().add("timer-text");
+    distanceLabel = new Label();
+    distanceLabel.getStyleClass().add("timer-text");
+    Button menuButton = new Button("Back to Menu");
+    menuButton.getStyleClass().add("button-backtomenu");
+    menuButton.setOnAction(event -> end(false));
+    HBox controls = new HBox(timerLabel, distanceLabel, menuButton);
+    controls.setAlignment(Pos.TOP_RIGHT);
+    HBox.setMargin(timerLabel, new Insets(10));
+    HBox.setMargin(distanceLabel, new Insets(10));
+    updateLabels();
+
+    VBox root = new VBox(controls, tiles);
+    root.setAlignment(Pos.TOP_CENTER);
+    root.setSpacing(10);
+    return root;
+  }
+
+  /**
+   * Moves the player, or bumps into an obstacle. A move into a chunk not generated yet is ignored,
+   * the game never waits for the generators.
+   */
+  private void handleKey(KeyCode code) {
+    if (!running) {
+      return;
+    }
+    int moveX = 0;
+    int moveY = 0;
+    switch (code) {
+      case UP:
+        moveX = -1;
+        break;
+      case DOWN:
+        moveX = 1;
+        break;
+      case LEFT:
+        moveY = -1;
+        break;
+      case RIGHT:
+        moveY = 1;
+        break;
+      default:
+        return;
+    }
+    world.publish();
+    byte tile = world.getTile(x + moveX, y + moveY);
+    if (tile == EndlessWorld.UNLOADED) {
+      System.out.println("Terrain still loading ahead");
+      return;
+    } else if (RPGRules.isObstacle(tile)) {
+      Music.get().playEffect("colision-sound.mp3", menuController.getVolume());
+      timerSeconds = RPGRules.bump(timerSeconds, 1);
+      moveX = 0;
+      moveY = 0;
+    } else {
+      x += moveX;
+      y += moveY;
+      if (tile == RPGMap.DRUG) {
+        Music.get().playEffect("drugs-sound.mp3", menuController.getVolume());
+        timerSeconds = RPGRules.takeDrug(timerSeconds, 1, RPGRules.UNCAPPED);
+        world.setTile(x, y, RPGMap.GRASS);
+      }
+      distance = Math.max(distance, Math.abs(x - Chunk.SIZE / 2) + Math.abs(y - Chunk.SIZE / 2));
+    }
+    world.update(x, y, moveX, moveY);
+    redraw();
+    updateLabels();
+    if (RPGRules.isTimeUp(timerSeconds)) {
+      end(true);
+    }
+  }
+
+  private void tick() {
+    --timerSeconds;
+    updateLabels();
+    if (RPGRules.isTimeUp(timerSeconds)) {
+      end(true);
+    }
+  }
+
+  /** Shows the window of the world around the player, hiding the tiles not generated yet. */
+  private void redraw() {
+    for (int i = 0; i < VIEW_SIZE; ++i) {
+      for (int j = 0; j < VIEW_SIZE; ++j) {
+        byte tile = world.getTile(x + i - CENTER, y + j - CENTER);
+        sprites[i][j].setOpacity(tile == EndlessWorld.UNLOADED ? UNLOADED_OPACITY : 1.0);
+        switch (tile) {
+          case RPGMap.ROCK:
+            layers.setItem(i, j, SpriteAtlas.ROCK);
+            break;
+          case RPGMap.PANEL:
+            layers.setItem(i, j, SpriteAtlas.PANEL);
+            break;
+          case RPGMap.DRUG:
+            layers.setItem(i, j, SpriteAtlas.DRUG);
+            break;
+          default:
+            layers.setItem(i, j, -1);
+            break;
+        }
+      }
+    }
+  }
+
+  private void updateLabels() {
+    int seconds = Math.max(0, timerSeconds);
+    timerLabel.setText(String.format("%02d:%02d", seconds / 60, seconds % 60));
+    distanceLabel.setText("Distance: " + distance);
+    boolean panic = timerSeconds <= PANIC_SECONDS;
+    timerLabel.getStyleClass().setAll(panic ? "panic-mode" : "timer-text");
+    animator.play(playerAnimation, SpriteAtlas.PLAYER + (panic ? 2 : 0), 1);
+  }
+
+  /** Ends the run and goes back to the menu. */
+  private void end(boolean gamePlayed) {
+    if (!running) {
+      return;
+    }
+    running = false;
+    timer.stop();
+    publisher.stop();
+    animator.stop();
+    animator.clear();
+    world.close();
+    System.out.println(
+        String.format(
+            "Endless run over: distance %d, %d chunks live, %d evicted",
+            distance, world.getLoadedChunks(), world.getEvictedChunks()));
+
+    stage.close();
+    RPGMenuView menuView = new RPGMenuView(new Stage(), menuController);
+    menuView.display(gamePlayed, false);
+  }
+}
@@ -0,0 +1,213 @@
+package rpg.endless;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The terrain of the endless mode, generated chunk by chunk as the player runs.
+ *
+ * <p>Each move predicts where the player is heading and asks the generator threads for the chunks
+ * around the player and around the predicted position. Generated chunks wait in a queue until the
+ * game thread publishes them into the live world, which only the game thread touches, so a move
+ * never waits for a generator nor a lock. The live world keeps its chunks in access order and
+ * evicts the least recently used ones beyond a memory budget. The chunks around the player are
+ * touched on every move and stay, a chunk evicted far behind is generated again if the player comes
+ * back. The tiles the player changed, such as the drugs taken, are kept apart from the chunks and
+ * applied again to a regenerated chunk, a few bytes per change outside the budget.
+ */
+public class EndlessWorld {
+  /** The tile type of a tile whose chunk is not generated yet. */
+  public static final byte UNLOADED = -1;
+
+  // How far ahead of the player the prediction looks, in tiles
+  private static final int LOOKAHEAD = 2 * Chunk.SIZE;
+  // The weight of the last move in the heading
+  private static final double HEADING_WEIGHT = 0.3;
+
+  private final long seed;
+  private final int maxChunks;
+  private final ExecutorService generators;
+  private final Set<Long> requested = ConcurrentHashMap.newKeySet();
+  private final Queue<Chunk> generated = new ConcurrentLinkedQueue<>();
+  private final LinkedHashMap<Long, Chunk> chunks;
+  // The changed tiles per chunk key: a count, then the tile indices shifted left by 8 and the types
+  private final Map<Long, int[]> changes = new HashMap<>();
+  private double headingX;
+  private double headingY;
+  private long evicted;
+
+  /**
+   * Constructs an empty world and starts its generator threads.
+   *
+   * @param seed the seed of the world
+   * @param budgetBytes the memory the live chunks may take
+   * @param threads the number of generator threads
+   */
+  public EndlessWorld(long seed, int budgetBytes, int threads) {
+    this.seed = seed;
+    // Keep at least the chunks around the player and around the prediction
+    this.maxChunks = Math.max(32, budgetBytes / Chunk.BYTES);
+    this.chunks =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+            if (size() > maxChunks) {
+              ++evicted;
+              return true;
+            }
+            return false;
+          }
+        };
+    this.generators =
+        Executors.newFixedThreadPool(
+            Math.max(1, threads),
+            task -> {
+              Thread thread = new Thread(task, "rpg-endless-generator");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Gets a tile of the world.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @return the tile type, one of the RPGMap constants, or UNLOADED
+   */
+  public byte getTile(int x, int y) {
+    Chunk chunk = chunks.get(Chunk.key(Math.floorDiv(x, Chunk.SIZE), Math.floorDiv(y, Chunk.SIZE)));
+    if (chunk == null) {
+      return UNLOADED;
+    }
+    return chunk.getTile(Math.floorMod(x, Chunk.SIZE), Math.floorMod(y, Chunk.SIZE));
+  }
+
+  /**
+   * Sets a tile of the world, such as a drug the player took, which outlives the eviction of its
+   * chunk. Does nothing if its chunk is not loaded.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @param tile the tile type, one of the RPGMap constants
+   */
+  public void setTile(int x, int y, byte tile) {
+    long key = Chunk.key(Math.floorDiv(x, Chunk.SIZE), Math.floorDiv(y, Chunk.SIZE));
+    Chunk chunk = chunks.get(key);
+    if (chunk == null) {
+      return;
+    }
+    int tileX = Math.floorMod(x, Chunk.SIZE);
+    int tileY = Math.floorMod(y, Chunk.SIZE);
+    chunk.setTile(tileX, tileY, tile);
+
+    int[] changed = changes.get(key);
+    if (changed == null) {
+      changed = new int[4];
+    } else if (changed[0] == changed.length - 1) {
+      changed = Arrays.copyOf(changed, changed.length << 1);
+    }
+    changed[++changed[0]] = ((tileX * Chunk.SIZE + tileY) << 8) | (tile & 0xFF);
+    changes.put(key, changed);
+  }
+
+  /**
+   * Follows the player: updates the heading with the last move, keeps the chunks around the player
+   * live and requests the chunks around the player and ahead of it.
+   *
+   * @param x the x-coordinate of the player
+   * @param y the y-coordinate of the player
+   * @param moveX the last move along x, -1, 0 or 1
+   * @param moveY the last move along y, -1, 0 or 1
+   */
+  public void update(int x, int y, int moveX, int moveY) {
+    headingX = headingX * (1 - HEADING_WEIGHT) + moveX * HEADING_WEIGHT;
+    headingY = headingY * (1 - HEADING_WEIGHT) + moveY * HEADING_WEIGHT;
+
+    // The nearest chunks first, the generators take the requests in order
+    int chunkX = Math.floorDiv(x, Chunk.SIZE);
+    int chunkY = Math.floorDiv(y, Chunk.SIZE);
+    requestAround(chunkX, chunkY);
+    int aheadX = Math.floorDiv(x + (int) Math.round(headingX * LOOKAHEAD), Chunk.SIZE);
+    int aheadY = Math.floorDiv(y + (int) Math.round(headingY * LOOKAHEAD), Chunk.SIZE);
+    if (aheadX != chunkX || aheadY != chunkY) {
+      requestAround(aheadX, aheadY);
+    }
+  }
+
+  /**
+   * Moves the generated chunks into the live world, with the tiles the player changed before they
+   * were evicted. Never blocks.
+   *
+   * @return the number of chunks published
+   */
+  public int publish() {
+    int count = 0;
+    Chunk chunk;
+    while ((chunk = generated.poll()) != null) {
+      long key = Chunk.key(chunk.getChunkX(), chunk.getChunkY());
+      int[] changed = changes.get(key);
+      if (changed != null) {
+        // In the order of the changes, the last one of a tile wins
+        for (int i = 1; i <= changed[0]; ++i) {
+          int index = changed[i] >>> 8;
+          chunk.setTile(index / Chunk.SIZE, index % Chunk.SIZE, (byte) changed[i]);
+        }
+      }
+      chunks.put(key, chunk);
+      requested.remove(key);
+      ++count;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the number of live chunks.
+   *
+   * @return the number of chunks in memory
+   */
+  public int getLoadedChunks() {
+    return chunks.size();
+  }
+
+  /**
+   * Gets the number of chunks evicted so far.
+   *
+   * @return the number of evicted chunks
+   */
+  public long getEvictedChunks() {
+    return evicted;
+  }
+
+  /** Stops the generator threads, dropping the pending requests. */
+  public void close() {
+    generators.shutdownNow();
+  }
+
+  /** Touches the chunks around a chunk and requests the missing ones. */
+  private void requestAround(int chunkX, int chunkY) {
+    request(chunkX, chunkY);
+    for (int dx = -1; dx <= 1; ++dx) {
+      for (int dy = -1; dy <= 1; ++dy) {
+        request(chunkX + dx, chunkY + dy);
+      }
+    }
+  }
+
+  private void request(int chunkX, int chunkY) {
+    long key = Chunk.key(chunkX, chunkY);
+    // Reading a live chunk refreshes its place in the eviction order
+    if (chunks.get(key) != null || !requested.add(key)) {
+      return;
+    }
+    generators.execute(() -> generated.add(ChunkGenerator.generate(seed, chunkX, chunkY)));
+  }
+}
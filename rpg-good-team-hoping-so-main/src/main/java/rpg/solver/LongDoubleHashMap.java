@@ -0,0 +1,131 @@
+package rpg.solver;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from non-negative long keys to double values, using linear probing
+ * over primitive arrays so that lookups never box or allocate.
+ */
+public class LongDoubleHashMap {
+  private static final long EMPTY = -1L;
+  private static final double MAX_LOAD = 0.5;
+
+  private long[] keys;
+  private double[] values;
+  private int mask;
+  private int size;
+
+  /**
+   * Constructs a map able to hold the expected number of entries without resizing.
+   *
+   * @param expectedSize the expected number of entries
+   */
+  public LongDoubleHashMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+    allocate(capacity);
+  }
+
+  /**
+   * Gets the number of entries in the map.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the slot holding the key, inserting it with a value of 0 if absent. Slots stay valid until
+   * the next insertion that grows the map.
+   *
+   * @param key the non-negative key
+   * @return the slot of the key
+   */
+  public int insert(long key) {
+    if (size + 1 > mask * MAX_LOAD) {
+      resize();
+    }
+    int slot = hash(key) & mask;
+    while (keys[slot] != EMPTY) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = 0.0;
+    ++size;
+    return slot;
+  }
+
+  /**
+   * Gets the slot holding the key.
+   *
+   * @param key the non-negative key
+   * @return the slot of the key, or -1 if absent
+   */
+  public int slotOf(long key) {
+    int slot = hash(key) & mask;
+    while (keys[slot] != EMPTY) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the value stored in a slot.
+   *
+   * @param slot the slot returned by {@link #insert} or {@link #slotOf}
+   * @return the value in the slot
+   */
+  public double valueAt(int slot) {
+    return values[slot];
+  }
+
+  /**
+   * Sets the value stored in a slot. Distinct slots may be written concurrently as long as no
+   * insertion happens at the same time.
+   *
+   * @param slot the slot returned by {@link #insert} or {@link #slotOf}
+   * @param value the value to store
+   */
+  public void setValueAt(int slot, double value) {
+    values[slot] = value;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new double[capacity];
+    Arrays.fill(keys, EMPTY);
+    mask = capacity - 1;
+  }
+
+  private void resize() {
+    long[] oldKeys = keys;
+    double[] oldValues = values;
+    allocate(oldKeys.length << 1);
+    for (int i = 0; i < oldKeys.length; ++i) {
+      if (oldKeys[i] != EMPTY) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (keys[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private static int hash(long key) {
+    // Murmur3 finalizer, spreads packed bit fields over the whole table
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+}
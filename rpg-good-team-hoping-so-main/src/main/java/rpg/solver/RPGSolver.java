@@ -0,0 +1,318 @@
+package rpg.solver;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import rpg.RPGMap;
+import rpg.RPGModel;
+
+/**
+ * Computes the exact probability of winning a map under optimal play.
+ *
+ * <p>Time is discretized in ticks, one tick being the time the player needs for one action. A state
+ * is the player position, the ticks left on the timer, the ticks left on the fart cooldown and the
+ * set of drugs already taken, packed into a single long. Every action lowers a rank computed from
+ * the state (taking a drug, spending time, or farting whose bonus never exceeds its cooldown), so
+ * the reachable states form a directed acyclic graph. They are discovered from the start, sorted by
+ * rank and evaluated by expectimax one rank layer at a time, large layers being evaluated in
+ * parallel.
+ */
+public class RPGSolver {
+  /**
+   * The sustained rate of arrow presses of a player running for the house, the pace of the bots.
+   * TelemetryQuery measures it from recorded games.
+   */
+  public static final int ACTIONS_PER_SECOND = 4;
+  /**
+   * The number of actions per second of the difficulty rating, one per second of the game clock. At
+   * ACTIONS_PER_SECOND the clock covers every path to the house with time to spare, and the rating
+   * would only tell whether the house can be reached.
+   */
+  public static final int RATING_ACTIONS_PER_SECOND = 1;
+  /**
+   * The clock of the difficulty rating in seconds, the game timer less the 2 seconds the board
+   * takes to appear.
+   */
+  public static final int RATING_SECONDS = RPGModel.TIMER_DURATION - 2;
+
+  private static final int COORD_BITS = 12;
+  private static final int TIME_BITS = 12;
+  private static final int COOLDOWN_BITS = 8;
+  private static final int MAX_DRUGS = 19;
+  private static final int PARALLEL_THRESHOLD = 2048;
+  private static final int[] DX = {-1, 1, 0, 0};
+  private static final int[] DY = {0, 0, -1, 1};
+
+  private final RPGMap map;
+  private final int startX;
+  private final int startY;
+  private final int startTicks;
+  private final int maxTicks;
+  private final int bumpTicks;
+  private final int drugTicks;
+  private final int fartTicks;
+  private final int cooldownTicks;
+  private final int[] drugIndex;
+  private final int[] distance;
+  private final int drugCount;
+  private LongDoubleHashMap values;
+  private long[] pending = new long[8];
+  private int pendingCount;
+  private double winProbability = Double.NaN;
+
+  /**
+   * Constructs the solver rating a map, with a clock of RATING_SECONDS at RATING_ACTIONS_PER_SECOND
+   * and capping the timer at one minute.
+   *
+   * @param map the map to solve
+   * @param startX the starting x-coordinate of the player
+   * @param startY the starting y-coordinate of the player
+   * @throws IllegalArgumentException if the map holds more drugs than the solver can track
+   */
+  public RPGSolver(RPGMap map, int startX, int startY) {
+    this(map, startX, startY, RATING_SECONDS, RATING_ACTIONS_PER_SECOND, 60);
+  }
+
+  /**
+   * Constructs a solver for a map.
+   *
+   * @param map the map to solve
+   * @param startX the starting x-coordinate of the player
+   * @param startY the starting y-coordinate of the player
+   * @param timerSeconds the initial duration of the timer in seconds
+   * @param actionsPerSecond the number of actions the player performs per second
+   * @param maxSeconds the timer value above which bonuses are lost
+   * @throws IllegalArgumentException if the state space does not fit in a packed key, such as a map
+   *     holding more drugs than the solver can track
+   */
+  public RPGSolver(
+      RPGMap map, int startX, int startY, int timerSeconds, int actionsPerSecond, int maxSeconds) {
+    if (map.getSize() > 1 << COORD_BITS
+        || maxSeconds * actionsPerSecond >= 1 << TIME_BITS
+        || RPGModel.FART_COOLDOWN * actionsPerSecond >= 1 << COOLDOWN_BITS
+        || RPGModel.FART_BONUS > RPGModel.FART_COOLDOWN) {
+      throw new IllegalArgumentException("State space does not fit in a packed key");
+    }
+    this.map = map;
+    this.startX = startX;
+    this.startY = startY;
+    this.maxTicks = maxSeconds * actionsPerSecond;
+    this.bumpTicks = RPGModel.BUMP_PENALTY * actionsPerSecond;
+    this.drugTicks = RPGModel.DRUG_BONUS * actionsPerSecond;
+    this.fartTicks = RPGModel.FART_BONUS * actionsPerSecond;
+    this.cooldownTicks = RPGModel.FART_COOLDOWN * actionsPerSecond;
+
+    // Index the drugs so that taken drugs fit in a bit mask, a drug under the player is taken
+    int size = map.getSize();
+    int ticks = timerSeconds * actionsPerSecond;
+    int count = 0;
+    drugIndex = new int[size * size];
+    Arrays.fill(drugIndex, -1);
+    for (int i = 0; i < size; ++i) {
+      for (int j = 0; j < size; ++j) {
+        if (map.isDrug(i, j)) {
+          if (i == startX && j == startY) {
+            ticks += drugTicks;
+          } else if (count < MAX_DRUGS) {
+            drugIndex[i * size + j] = count++;
+          } else {
+            // Ignoring a drug would rate the map harder than it is
+            throw new IllegalArgumentException(
+                "More than " + MAX_DRUGS + " drugs do not fit in a packed key");
+          }
+        }
+      }
+    }
+    this.drugCount = count;
+    this.startTicks = Math.min(ticks, maxTicks);
+    // A state with at least the house distance in ticks is won by walking the shortest path
+    this.distance = map.houseDistances(startX, startY);
+  }
+
+  /**
+   * Gets the probability of winning the map under optimal play, solving it on first call.
+   *
+   * @return the win probability, between 0.0 and 1.0
+   */
+  public double winProbability() {
+    if (Double.isNaN(winProbability)) {
+      winProbability = solve();
+    }
+    return winProbability;
+  }
+
+  /**
+   * Gets the difficulty rating of the map.
+   *
+   * @return the probability of losing under optimal play, between 0.0 and 1.0
+   */
+  public double difficulty() {
+    return 1.0 - winProbability();
+  }
+
+  /**
+   * Gets the number of states explored by the solver.
+   *
+   * @return the number of reachable states
+   */
+  public int stateCount() {
+    winProbability();
+    return values.size();
+  }
+
+  private double solve() {
+    values = new LongDoubleHashMap(1 << 12);
+    int startDistance = distance[startX * map.getSize() + startY];
+    if (startTicks <= 0 || startDistance < 0) {
+      // Out of time, or walled off from the house where farting only delays the loss
+      return 0.0;
+    }
+    if (startTicks >= startDistance) {
+      return 1.0;
+    }
+
+    // Discover every reachable state breadth first, the map doubling as the visited set
+    long[] states = new long[1 << 10];
+    int count = 0;
+    long start = pack(startX, startY, startTicks, 0, 0);
+    values.insert(start);
+    states[count++] = start;
+    for (int head = 0; head < count; ++head) {
+      // Newly discovered successors are collected in the pending buffer, then queued
+      expand(states[head], false);
+      if (count + pendingCount > states.length) {
+        states = Arrays.copyOf(states, Math.max(states.length << 1, count + pendingCount));
+      }
+      System.arraycopy(pending, 0, states, count, pendingCount);
+      count += pendingCount;
+      pendingCount = 0;
+    }
+
+    // Sort the states by rank, successors always having a lower rank than their predecessor
+    long[] order = new long[count];
+    for (int i = 0; i < count; ++i) {
+      order[i] = (long) rank(states[i]) << 32 | i;
+    }
+    Arrays.sort(order);
+
+    // Evaluate layer by layer, states of a same rank never depend on each other
+    final long[] discovered = states;
+    int from = 0;
+    while (from < count) {
+      int to = from;
+      while (to < count && order[to] >>> 32 == order[from] >>> 32) {
+        ++to;
+      }
+      IntStream layer = IntStream.range(from, to);
+      if (to - from >= PARALLEL_THRESHOLD) {
+        layer = layer.parallel();
+      }
+      layer.forEach(
+          i -> {
+            long key = discovered[(int) order[i]];
+            values.setValueAt(values.slotOf(key), expand(key, true));
+          });
+      from = to;
+    }
+    return values.valueAt(values.slotOf(start));
+  }
+
+  /**
+   * Expands the successors of a state, either discovering them or computing the expectimax value of
+   * the state from their already computed values.
+   */
+  private double expand(long key, boolean evaluate) {
+    int x = (int) (key & mask(COORD_BITS));
+    int y = (int) (key >>> COORD_BITS & mask(COORD_BITS));
+    int ticks = (int) (key >>> 2 * COORD_BITS & mask(TIME_BITS));
+    int cooldown = (int) (key >>> 2 * COORD_BITS + TIME_BITS & mask(COOLDOWN_BITS));
+    int taken = (int) (key >>> 2 * COORD_BITS + TIME_BITS + COOLDOWN_BITS);
+    int nextCooldown = Math.max(0, cooldown - 1);
+    double best = 0.0;
+    boolean bumped = false;
+
+    for (int d = 0; d < DX.length; ++d) {
+      int nx = x + DX[d];
+      int ny = y + DY[d];
+      if (!map.inBounds(nx, ny) || isBlocked(nx, ny)) {
+        // Every bump leads to the same state, standing still while losing time
+        if (!bumped) {
+          bumped = true;
+          best =
+              Math.max(best, successor(x, y, ticks - 1 - bumpTicks, nextCooldown, taken, evaluate));
+        }
+      } else if (map.isHouse(nx, ny)) {
+        return 1.0;
+      } else {
+        int drug = drugIndex[nx * map.getSize() + ny];
+        if (drug >= 0 && (taken & 1 << drug) == 0) {
+          int bonus = Math.min(maxTicks, ticks - 1 + drugTicks);
+          best =
+              Math.max(best, successor(nx, ny, bonus, nextCooldown, taken | 1 << drug, evaluate));
+        } else {
+          best = Math.max(best, successor(nx, ny, ticks - 1, nextCooldown, taken, evaluate));
+        }
+      }
+    }
+
+    if (cooldown == 0) {
+      // A fart either buys time and starts the cooldown, or ends the game
+      int bonus = Math.min(maxTicks, ticks - 1 + fartTicks);
+      double relieved = successor(x, y, bonus, cooldownTicks, taken, evaluate);
+      best = Math.max(best, RPGModel.FART_SUCCESS_CHANCE * relieved);
+    }
+    return best;
+  }
+
+  private double successor(int x, int y, int ticks, int cooldown, int taken, boolean evaluate) {
+    if (ticks <= 0) {
+      return 0.0;
+    }
+    if (ticks >= distance[x * map.getSize() + y]) {
+      return 1.0;
+    }
+    long key = pack(x, y, ticks, cooldown, taken);
+    if (evaluate) {
+      return values.valueAt(values.slotOf(key));
+    }
+    int before = values.size();
+    values.insert(key);
+    if (values.size() != before) {
+      if (pendingCount == pending.length) {
+        pending = Arrays.copyOf(pending, pendingCount << 1);
+      }
+      pending[pendingCount++] = key;
+    }
+    return 0.0;
+  }
+
+  /**
+   * Ranks a state so that every action strictly lowers it: taking a drug outweighs any change of
+   * time, and a tick of time outweighs a tick of cooldown.
+   */
+  private int rank(long key) {
+    int ticks = (int) (key >>> 2 * COORD_BITS & mask(TIME_BITS));
+    int cooldown = (int) (key >>> 2 * COORD_BITS + TIME_BITS & mask(COOLDOWN_BITS));
+    int taken = (int) (key >>> 2 * COORD_BITS + TIME_BITS + COOLDOWN_BITS);
+    int timeWeight = cooldownTicks + 1;
+    int drugWeight = timeWeight * maxTicks + cooldownTicks + 1;
+    int remaining = drugCount - Integer.bitCount(taken);
+    return remaining * drugWeight + timeWeight * ticks + cooldownTicks * (cooldownTicks - cooldown);
+  }
+
+  /** Checks for an obstacle, the start tile being cleared by the player standing on it. */
+  private boolean isBlocked(int x, int y) {
+    return map.isObstacle(x, y) && !(x == startX && y == startY);
+  }
+
+  private static long pack(int x, int y, int ticks, int cooldown, int taken) {
+    return x
+        | (long) y << COORD_BITS
+        | (long) ticks << 2 * COORD_BITS
+        | (long) cooldown << 2 * COORD_BITS + TIME_BITS
+        | (long) taken << 2 * COORD_BITS + TIME_BITS + COOLDOWN_BITS;
+  }
+
+  private static long mask(int bits) {
+    return (1L << bits) - 1;
+  }
+}
@@ -0,0 +1,260 @@
+package rpg.stats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The career statistics shown in the menu: games played, win rate, time left on wins, distinct maps
+ * and the most bumped obstacle tiles. Every game folds into fixed-size sketches instead of a
+ * history, so the memory and the file stay the same size however many games were played, and the
+ * files of several machines merge into one.
+ */
+public final class CareerStats {
+  /** The default file of the statistics, in the working directory. */
+  public static final String DEFAULT_FILE = "career.stats";
+
+  private static final int MAGIC = 0x52504753;
+
+  private static CareerStats instance = new CareerStats(null);
+
+  private final Path file;
+  private long games;
+  private long wins;
+  private QuantileSketch timeLeft = new QuantileSketch();
+  private HyperLogLog maps = new HyperLogLog();
+  private CountMinSketch bumps = new CountMinSketch();
+
+  private CareerStats(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Gets the statistics of the application, kept in memory only until they are loaded.
+   *
+   * @return the career statistics
+   */
+  public static CareerStats get() {
+    return instance;
+  }
+
+  /**
+   * Loads the statistics of a file, which the following games update. A missing file starts the
+   * statistics over. An unreadable file is moved aside to a .unreadable file so that the next save
+   * does not overwrite it, or, if it cannot be moved, the statistics are kept in memory only.
+   *
+   * @param file the statistics file
+   */
+  public static void load(Path file) {
+    instance = new CareerStats(file);
+    if (!Files.exists(file)) {
+      return;
+    }
+    try {
+      instance.merge(read(file));
+    } catch (IOException e) {
+      System.out.println("Stats: cannot read " + file + ", " + e.getMessage());
+      Path aside = file.resolveSibling(file.getFileName() + ".unreadable");
+      try {
+        Files.move(file, aside, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Stats: moved it to " + aside + ", starting over");
+      } catch (IOException moveError) {
+        System.out.println("Stats: cannot move it aside, not saving, " + moveError.getMessage());
+        instance = new CareerStats(null);
+      }
+    }
+  }
+
+  /**
+   * Folds a finished game into the statistics and saves them.
+   *
+   * @param gameWon true if the player reached the house
+   * @param secondsLeft the seconds left on the timer, only counted for a win
+   * @param seed the seed of the map
+   * @param size the width and height of the map
+   * @param bumped the tiles of the obstacles bumped into, indexed by x * size + y, once per bump
+   */
+  public void recordGame(boolean gameWon, int secondsLeft, long seed, int size, int[] bumped) {
+    ++games;
+    if (gameWon) {
+      ++wins;
+      timeLeft.add(Math.max(0, secondsLeft));
+    }
+    maps.add(seed);
+    for (int tile : bumped) {
+      bumps.add(tileKey(tile / size, tile % size));
+    }
+    save();
+  }
+
+  /**
+   * Adds the games of other statistics, such as the file of another machine.
+   *
+   * @param other the statistics to merge
+   */
+  public void merge(CareerStats other) {
+    games += other.games;
+    wins += other.wins;
+    timeLeft.merge(other.timeLeft);
+    maps.merge(other.maps);
+    bumps.merge(other.bumps);
+  }
+
+  /**
+   * Gets the number of games played.
+   *
+   * @return the number of games
+   */
+  public long getGames() {
+    return games;
+  }
+
+  /**
+   * Gets the share of games won.
+   *
+   * @return the win rate from 0 to 1, 0 before the first game
+   */
+  public double getWinRate() {
+    return games == 0 ? 0 : (double) wins / games;
+  }
+
+  /**
+   * Estimates a quantile of the seconds left at the end of the won games.
+   *
+   * @param q the quantile from 0 to 1, 0.5 for the median
+   * @return the estimated seconds left
+   */
+  public double getTimeLeft(double q) {
+    return timeLeft.quantile(q);
+  }
+
+  /**
+   * Estimates the number of distinct maps played.
+   *
+   * @return the estimated number of distinct seeds
+   */
+  public long getDistinctMaps() {
+    return maps.estimate();
+  }
+
+  /**
+   * Estimates how many times an obstacle tile was bumped into.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @return the estimated number of bumps
+   */
+  public int getBumps(int x, int y) {
+    return bumps.estimate(tileKey(x, y));
+  }
+
+  /**
+   * Formats the statistics for the menu, one line per statistic.
+   *
+   * @return the statistics text, empty before the first game
+   */
+  public String summary() {
+    if (games == 0) {
+      return "";
+    }
+    StringBuilder hot = new StringBuilder();
+    for (long key : bumps.top()) {
+      hot.append(hot.length() > 0 ? ", " : "")
+          .append(String.format("(%d,%d) x%d", tileX(key), tileY(key), bumps.estimate(key)));
+    }
+    return String.format(
+        "Games: %d   Win rate: %.0f%%%nTime left on wins: median %.0fs, p95 %.0fs%n"
+            + "Maps played: ~%d%n"
+            + "Most bumped: %s",
+        games,
+        getWinRate() * 100,
+        getTimeLeft(0.5),
+        getTimeLeft(0.95),
+        getDistinctMaps(),
+        hot.length() > 0 ? hot : "none");
+  }
+
+  /** Gets the key of a tile in the hot tile sketch, the same whatever the size of the map. */
+  private static long tileKey(int x, int y) {
+    return (long) x << 32 | y;
+  }
+
+  private static int tileX(long key) {
+    return (int) (key >>> 32);
+  }
+
+  private static int tileY(long key) {
+    return (int) key;
+  }
+
+  /** Writes the statistics to their file, replacing it only once fully written. */
+  private void save() {
+    if (file == null) {
+      return;
+    }
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      write(temporary);
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      System.out.println("Stats: cannot write " + file + ", " + e.getMessage());
+    }
+  }
+
+  private void write(Path path) throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path))))) {
+      out.writeInt(MAGIC);
+      out.writeLong(games);
+      out.writeLong(wins);
+      timeLeft.write(out);
+      maps.write(out);
+      bumps.write(out);
+    }
+  }
+
+  private static CareerStats read(Path path) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a statistics file");
+      }
+      CareerStats stats = new CareerStats(null);
+      stats.games = in.readLong();
+      stats.wins = in.readLong();
+      stats.timeLeft = QuantileSketch.read(in);
+      stats.maps = HyperLogLog.read(in);
+      stats.bumps = CountMinSketch.read(in);
+      return stats;
+    }
+  }
+
+  /**
+   * Merges the statistics files of several machines into one and prints the result.
+   *
+   * @param args the output file, then the files to merge
+   * @throws IOException if a file cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println("Usage: CareerStats <output> <input>...");
+      return;
+    }
+    CareerStats merged = new CareerStats(Paths.get(args[0]));
+    for (int i = 1; i < args.length; ++i) {
+      merged.merge(read(Paths.get(args[i])));
+    }
+    merged.write(merged.file);
+    System.out.println(merged.summary());
+  }
+}
@@ -0,0 +1,140 @@
+package rpg.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A count-min sketch of how often keys occur, such as the obstacle tiles the players bump into,
+ * with the few most frequent keys kept as candidates. Each key adds to one counter per row, its
+ * count is the smallest of them, and two sketches merge by adding their counters.
+ */
+public class CountMinSketch {
+  private static final int DEPTH = 4;
+  private static final int WIDTH = 512;
+
+  /** The number of most frequent keys kept. */
+  public static final int TOP = 5;
+
+  private final int[] counters = new int[DEPTH * WIDTH];
+  private final long[] topKeys = new long[TOP];
+  private int topCount;
+
+  /**
+   * Adds an occurrence of a key.
+   *
+   * @param key the key
+   */
+  public void add(long key) {
+    for (int row = 0; row < DEPTH; ++row) {
+      ++counters[index(row, key)];
+    }
+    offer(key);
+  }
+
+  /**
+   * Estimates how often a key occurred, never less than the true count.
+   *
+   * @param key the key
+   * @return the estimated number of occurrences
+   */
+  public int estimate(long key) {
+    int estimate = Integer.MAX_VALUE;
+    for (int row = 0; row < DEPTH; ++row) {
+      estimate = Math.min(estimate, counters[index(row, key)]);
+    }
+    return estimate;
+  }
+
+  /**
+   * Gets the most frequent keys, the most frequent first.
+   *
+   * @return at most TOP keys
+   */
+  public long[] top() {
+    Long[] keys = new Long[topCount];
+    for (int i = 0; i < topCount; ++i) {
+      keys[i] = topKeys[i];
+    }
+    Arrays.sort(keys, (a, b) -> Integer.compare(estimate(b), estimate(a)));
+    long[] result = new long[topCount];
+    for (int i = 0; i < topCount; ++i) {
+      result[i] = keys[i];
+    }
+    return result;
+  }
+
+  /**
+   * Adds the occurrences of another sketch to this one, the candidates of both competing for the
+   * most frequent keys.
+   *
+   * @param other the sketch to merge
+   */
+  public void merge(CountMinSketch other) {
+    for (int i = 0; i < counters.length; ++i) {
+      counters[i] += other.counters[i];
+    }
+    for (int i = 0; i < other.topCount; ++i) {
+      offer(other.topKeys[i]);
+    }
+  }
+
+  /**
+   * Writes the counters and the candidates.
+   *
+   * @param out the stream to write to
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(DataOutputStream out) throws IOException {
+    for (int counter : counters) {
+      out.writeInt(counter);
+    }
+    out.writeByte(topCount);
+    for (int i = 0; i < topCount; ++i) {
+      out.writeLong(topKeys[i]);
+    }
+  }
+
+  /**
+   * Reads a sketch written by {@link #write}.
+   *
+   * @param in the stream to read from
+   * @return the sketch
+   * @throws IOException if the stream cannot be read
+   */
+  public static CountMinSketch read(DataInputStream in) throws IOException {
+    CountMinSketch sketch = new CountMinSketch();
+    for (int i = 0; i < sketch.counters.length; ++i) {
+      sketch.counters[i] = in.readInt();
+    }
+    int count = Math.min(TOP, in.readUnsignedByte());
+    for (int i = 0; i < count; ++i) {
+      sketch.offer(in.readLong());
+    }
+    return sketch;
+  }
+
+  /** Keeps a key among the candidates if it is now more frequent than the least frequent one. */
+  private void offer(long key) {
+    int least = -1;
+    for (int i = 0; i < topCount; ++i) {
+      if (topKeys[i] == key) {
+        return;
+      }
+      if (least < 0 || estimate(topKeys[i]) < estimate(topKeys[least])) {
+        least = i;
+      }
+    }
+    if (topCount < TOP) {
+      topKeys[topCount++] = key;
+    } else if (estimate(key) > estimate(topKeys[least])) {
+      topKeys[least] = key;
+    }
+  }
+
+  private static int index(int row, long key) {
+    long hash = HyperLogLog.mix(key + row * 0x9E3779B97F4A7C15L);
+    return row * WIDTH + (int) ((hash >>> 1) % WIDTH);
+  }
+}
@@ -0,0 +1,95 @@
+package rpg.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A HyperLogLog sketch counting distinct values, such as the seeds of the maps played, in a fixed
+ * kilobyte. Each value hashes to a register keeping the longest run of leading zeros seen, and two
+ * sketches merge by keeping the larger register.
+ */
+public class HyperLogLog {
+  // 2^10 registers, a standard error of about 3%
+  private static final int PRECISION = 10;
+  private static final int REGISTERS = 1 << PRECISION;
+  private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+  private final byte[] registers = new byte[REGISTERS];
+
+  /**
+   * Adds a value to the sketch.
+   *
+   * @param value the value
+   */
+  public void add(long value) {
+    long hash = mix(value);
+    int register = (int) (hash >>> (64 - PRECISION));
+    // The position of the first set bit after the register bits, the sentinel bounds it
+    int rank = Long.numberOfLeadingZeros(hash << PRECISION | 1L << (PRECISION - 1)) + 1;
+    if (rank > registers[register]) {
+      registers[register] = (byte) rank;
+    }
+  }
+
+  /**
+   * Estimates the number of distinct values added.
+   *
+   * @return the estimated number of distinct values
+   */
+  public long estimate() {
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      zeros += register == 0 ? 1 : 0;
+    }
+    double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+    if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+      // Few values leave empty registers, counting them is more accurate
+      estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  /**
+   * Adds the values of another sketch to this one.
+   *
+   * @param other the sketch to merge
+   */
+  public void merge(HyperLogLog other) {
+    for (int i = 0; i < REGISTERS; ++i) {
+      registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+    }
+  }
+
+  /**
+   * Writes the registers.
+   *
+   * @param out the stream to write to
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(DataOutputStream out) throws IOException {
+    out.write(registers);
+  }
+
+  /**
+   * Reads a sketch written by {@link #write}.
+   *
+   * @param in the stream to read from
+   * @return the sketch
+   * @throws IOException if the stream cannot be read
+   */
+  public static HyperLogLog read(DataInputStream in) throws IOException {
+    HyperLogLog sketch = new HyperLogLog();
+    in.readFully(sketch.registers);
+    return sketch;
+  }
+
+  /** Scrambles the bits of a value, the finalizer of SplitMix64. */
+  static long mix(long value) {
+    value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+    value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+    return value ^ (value >>> 31);
+  }
+}
@@ -0,0 +1,131 @@
+package rpg.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A mergeable sketch of the quantiles of non-negative values, such as the time left at the end of
+ * the games. Values fall into buckets growing geometrically, so that a quantile is known within a
+ * few percent whatever the number of values, and two sketches merge by adding their buckets.
+ */
+public class QuantileSketch {
+  private static final int BUCKETS = 256;
+  // Each bucket ends 4% above the previous one, the last one catches every larger value
+  private static final double GAMMA = 1.04;
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+
+  private final long[] counts = new long[BUCKETS];
+  private long total;
+
+  /**
+   * Adds a value to the sketch.
+   *
+   * @param value the value, negative values count as 0
+   */
+  public void add(double value) {
+    ++counts[bucket(value)];
+    ++total;
+  }
+
+  /**
+   * Gets the number of values added.
+   *
+   * @return the number of values
+   */
+  public long count() {
+    return total;
+  }
+
+  /**
+   * Estimates a quantile of the values.
+   *
+   * @param q the quantile from 0 to 1, 0.5 for the median
+   * @return the estimated value, 0 if the sketch is empty
+   */
+  public double quantile(double q) {
+    if (total == 0) {
+      return 0;
+    }
+    // The rank of the quantile among the sorted values, from 1
+    long rank = Math.max(1, (long) Math.ceil(q * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; ++i) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return value(i);
+      }
+    }
+    return value(BUCKETS - 1);
+  }
+
+  /**
+   * Adds the values of another sketch to this one.
+   *
+   * @param other the sketch to merge
+   */
+  public void merge(QuantileSketch other) {
+    for (int i = 0; i < BUCKETS; ++i) {
+      counts[i] += other.counts[i];
+    }
+    total += other.total;
+  }
+
+  /**
+   * Writes the non-empty buckets.
+   *
+   * @param out the stream to write to
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(DataOutputStream out) throws IOException {
+    int used = 0;
+    for (long count : counts) {
+      used += count > 0 ? 1 : 0;
+    }
+    out.writeShort(used);
+    for (int i = 0; i < BUCKETS; ++i) {
+      if (counts[i] > 0) {
+        out.writeByte(i);
+        out.writeLong(counts[i]);
+      }
+    }
+  }
+
+  /**
+   * Reads a sketch written by {@link #write}.
+   *
+   * @param in the stream to read from
+   * @return the sketch
+   * @throws IOException if the stream cannot be read
+   */
+  public static QuantileSketch read(DataInputStream in) throws IOException {
+    QuantileSketch sketch = new QuantileSketch();
+    int used = in.readUnsignedShort();
+    for (int i = 0; i < used; ++i) {
+      int bucket = in.readUnsignedByte();
+      long count = in.readLong();
+      sketch.counts[bucket] += count;
+      sketch.total += count;
+    }
+    return sketch;
+  }
+
+  /** Gets the bucket of a value: 0 for 0, 1 up to 1, then one bucket per power of gamma. */
+  private static int bucket(double value) {
+    if (value <= 0) {
+      return 0;
+    } else if (value <= 1) {
+      return 1;
+    }
+    int bucket = 1 + (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    return Math.min(BUCKETS - 1, bucket);
+  }
+
+  /** Gets the value standing for a bucket, halfway between its bounds in relative terms. */
+  private static double value(int bucket) {
+    if (bucket <= 1) {
+      return bucket;
+    }
+    return 2 * Math.pow(GAMMA, bucket - 1) / (GAMMA + 1);
+  }
+}
@@ -0,0 +1,157 @@
+package rpg.telemetry;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A batch of telemetry records stored column by column: one primitive array per field, allocated
+ * once. Writing the columns one after the other keeps similar values together, which compresses
+ * well. Grid sizes and coordinates are stored as shorts, so large maps are recorded as they are.
+ */
+public class TelemetryBatch {
+  private static final int MAGIC = 0x52505432; // "RPT2", coordinates were bytes in "RPTT"
+
+  final long[] sessions;
+  final int[] ticks;
+  final short[] gridSizes;
+  final short[] xs;
+  final short[] ys;
+  final byte[] actions;
+  final byte[] flags;
+  final short[] timers;
+  int size;
+
+  /**
+   * Constructs an empty batch.
+   *
+   * @param capacity the number of records the batch holds
+   */
+  public TelemetryBatch(int capacity) {
+    sessions = new long[capacity];
+    ticks = new int[capacity];
+    gridSizes = new short[capacity];
+    xs = new short[capacity];
+    ys = new short[capacity];
+    actions = new byte[capacity];
+    flags = new byte[capacity];
+    timers = new short[capacity];
+  }
+
+  /**
+   * Gets the number of records in the batch.
+   *
+   * @return the number of records
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks if the batch is full.
+   *
+   * @return true if no more record fits, false otherwise
+   */
+  public boolean isFull() {
+    return size == ticks.length;
+  }
+
+  /** Empties the batch so it can be filled again. */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Appends a record to the batch, which must not be full.
+   *
+   * @param session the session the record belongs to
+   * @param tick the number of timer ticks since the session started
+   * @param gridSize the width and height of the grid of the session
+   * @param x the x-coordinate of the player
+   * @param y the y-coordinate of the player
+   * @param action the action, one of the TelemetrySink constants
+   * @param flag the outcome flags, TelemetrySink constants combined
+   * @param timer the remaining seconds of the timer
+   */
+  public void add(
+      long session, int tick, int gridSize, int x, int y, int action, int flag, int timer) {
+    sessions[size] = session;
+    ticks[size] = tick;
+    gridSizes[size] = (short) gridSize;
+    xs[size] = (short) x;
+    ys[size] = (short) y;
+    actions[size] = (byte) action;
+    flags[size] = (byte) flag;
+    timers[size] = (short) timer;
+    ++size;
+  }
+
+  /**
+   * Writes the records column by column.
+   *
+   * @param out the stream to write to
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(size);
+    for (int i = 0; i < size; ++i) {
+      out.writeLong(sessions[i]);
+    }
+    // Ticks grow within a session, their deltas are small
+    int previous = 0;
+    for (int i = 0; i < size; ++i) {
+      out.writeInt(ticks[i] - previous);
+      previous = ticks[i];
+    }
+    writeShorts(out, gridSizes);
+    writeShorts(out, xs);
+    writeShorts(out, ys);
+    out.write(actions, 0, size);
+    out.write(flags, 0, size);
+    writeShorts(out, timers);
+  }
+
+  private void writeShorts(DataOutputStream out, short[] column) throws IOException {
+    for (int i = 0; i < size; ++i) {
+      out.writeShort(column[i]);
+    }
+  }
+
+  private static void readShorts(DataInputStream in, short[] column) throws IOException {
+    for (int i = 0; i < column.length; ++i) {
+      column[i] = in.readShort();
+    }
+  }
+
+  /**
+   * Reads a batch written by {@link #write}.
+   *
+   * @param in the stream to read from
+   * @return the batch, sized to its records
+   * @throws IOException if the stream cannot be read or is not a telemetry batch
+   */
+  public static TelemetryBatch read(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a telemetry batch");
+    }
+    int size = in.readInt();
+    TelemetryBatch batch = new TelemetryBatch(size);
+    for (int i = 0; i < size; ++i) {
+      batch.sessions[i] = in.readLong();
+    }
+    int previous = 0;
+    for (int i = 0; i < size; ++i) {
+      previous += in.readInt();
+      batch.ticks[i] = previous;
+    }
+    readShorts(in, batch.gridSizes);
+    readShorts(in, batch.xs);
+    readShorts(in, batch.ys);
+    in.readFully(batch.actions);
+    in.readFully(batch.flags);
+    readShorts(in, batch.timers);
+    batch.size = size;
+    return batch;
+  }
+}
@@ -0,0 +1,221 @@
+package rpg.telemetry;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import rpg.solver.RPGSolver;
+
+/**
+ * The offline query tool of the telemetry files: scans every file of a directory in parallel and
+ * prints the win rate, the input rate, the heatmaps of visited and bumped tiles and the time left
+ * on wins. The grid size comes from the records, heatmaps of several sizes overlap from their top
+ * left corner.
+ */
+public final class TelemetryQuery {
+  private static final int MAX_SECONDS = 128;
+
+  private TelemetryQuery() {}
+
+  /**
+   * Runs the queries.
+   *
+   * @param args the telemetry directory, "telemetry" by default
+   * @throws IOException if the directory cannot be listed
+   */
+  public static void main(String[] args) throws IOException {
+    Path directory = Paths.get(args.length > 0 ? args[0] : "telemetry");
+    List<Path> files;
+    try (Stream<Path> list = Files.list(directory)) {
+      files =
+          list.filter(file -> file.toString().endsWith(TelemetrySink.EXTENSION))
+              .collect(Collectors.toList());
+    }
+
+    // Each file is scanned on its own, the partial aggregates are then merged
+    Aggregate total =
+        files.parallelStream().map(TelemetryQuery::scan).reduce(new Aggregate(), Aggregate::merge);
+    total.print(files.size());
+  }
+
+  private static Aggregate scan(Path file) {
+    Aggregate aggregate = new Aggregate();
+    try (DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+      aggregate.add(TelemetryBatch.read(in));
+    } catch (EOFException e) {
+      // A file cut by a crash holds no complete batch
+      System.out.println("Skipping truncated " + file);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read " + file, e);
+    }
+    return aggregate;
+  }
+
+  /** The aggregates of a set of records, mergeable so that files can be scanned in parallel. */
+  private static final class Aggregate {
+    private int size;
+    private long[] visits = new long[0];
+    private long[] collisions = new long[0];
+    private final long[] timeLeft = new long[MAX_SECONDS];
+    private long records;
+    private long won;
+    private long lost;
+    private long abandoned;
+    private long farts;
+    private long fartFailures;
+    private long drugs;
+    private long actions;
+    private long ticks;
+
+    /** Grows the heatmaps to a larger grid, keeping the counts of each tile. */
+    private void ensureSize(int gridSize) {
+      if (gridSize > size) {
+        visits = resize(visits, size, gridSize);
+        collisions = resize(collisions, size, gridSize);
+        size = gridSize;
+      }
+    }
+
+    private static long[] resize(long[] counts, int size, int gridSize) {
+      long[] resized = new long[gridSize * gridSize];
+      for (int x = 0; x < size; ++x) {
+        System.arraycopy(counts, x * size, resized, x * gridSize, size);
+      }
+      return resized;
+    }
+
+    void add(TelemetryBatch batch) {
+      records += batch.size;
+      for (int i = 0; i < batch.size; ++i) {
+        int action = batch.actions[i];
+        int flags = batch.flags[i];
+        int gridSize = batch.gridSizes[i];
+        int x = batch.xs[i];
+        int y = batch.ys[i];
+        boolean onGrid = x >= 0 && x < gridSize && y >= 0 && y < gridSize;
+        ensureSize(gridSize);
+
+        if (action <= TelemetrySink.FART) {
+          ++actions;
+        }
+        if (action <= TelemetrySink.RIGHT) {
+          if (onGrid) {
+            // A bump keeps the player on its tile, the bumped tile is next to it
+            if ((flags & TelemetrySink.COLLISION) != 0) {
+              ++collisions[x * size + y];
+            } else {
+              ++visits[x * size + y];
+            }
+          }
+          if ((flags & TelemetrySink.DRUG) != 0) {
+            ++drugs;
+          }
+        } else if (action == TelemetrySink.FART) {
+          ++farts;
+          if ((flags & TelemetrySink.FART_FAILURE) != 0) {
+            ++fartFailures;
+          }
+        } else if (action == TelemetrySink.TICK) {
+          ++ticks;
+        } else if (action == TelemetrySink.END) {
+          if ((flags & TelemetrySink.WON) != 0) {
+            ++won;
+            ++timeLeft[Math.max(0, Math.min(MAX_SECONDS - 1, batch.timers[i]))];
+          } else if ((flags & TelemetrySink.ABANDONED) != 0) {
+            ++abandoned;
+          } else {
+            ++lost;
+          }
+        }
+      }
+    }
+
+    Aggregate merge(Aggregate other) {
+      Aggregate merged = new Aggregate();
+      merged.ensureSize(Math.max(size, other.size));
+      merged.records = records + other.records;
+      merged.won = won + other.won;
+      merged.lost = lost + other.lost;
+      merged.abandoned = abandoned + other.abandoned;
+      merged.farts = farts + other.farts;
+      merged.fartFailures = fartFailures + other.fartFailures;
+      merged.drugs = drugs + other.drugs;
+      merged.actions = actions + other.actions;
+      merged.ticks = ticks + other.ticks;
+      merged.addCounts(this);
+      merged.addCounts(other);
+      for (int i = 0; i < MAX_SECONDS; ++i) {
+        merged.timeLeft[i] = timeLeft[i] + other.timeLeft[i];
+      }
+      return merged;
+    }
+
+    private void addCounts(Aggregate other) {
+      for (int x = 0; x < other.size; ++x) {
+        for (int y = 0; y < other.size; ++y) {
+          visits[x * size + y] += other.visits[x * other.size + y];
+          collisions[x * size + y] += other.collisions[x * other.size + y];
+        }
+      }
+    }
+
+    void print(int fileCount) {
+      long finished = won + lost;
+      System.out.println(records + " records in " + fileCount + " files");
+      System.out.println(
+          String.format(
+              "Sessions: %d won, %d lost, %d abandoned, win rate %.3f",
+              won, lost, abandoned, finished > 0 ? (double) won / finished : 0.0));
+      System.out.println(
+          String.format(
+              "Farts: %d, failure rate %.3f, drugs taken: %d",
+              farts, farts > 0 ? (double) fartFailures / farts : 0.0, drugs));
+      // The key presses per second of timer, the rate the bots should assume
+      System.out.println(
+          String.format(
+              "Input rate: %.2f actions per second, the bots assume %d",
+              ticks > 0 ? (double) actions / ticks : 0.0, RPGSolver.ACTIONS_PER_SECOND));
+
+      System.out.println("Visits heatmap:");
+      printGrid(visits);
+      System.out.println("Collisions heatmap (tile of the player when bumping):");
+      printGrid(collisions);
+
+      // Time left when reaching the house
+      long sum = 0;
+      long median = -1;
+      long seen = 0;
+      for (int seconds = 0; seconds < MAX_SECONDS; ++seconds) {
+        sum += seconds * timeLeft[seconds];
+        seen += timeLeft[seconds];
+        if (median < 0 && seen * 2 >= won && won > 0) {
+          median = seconds;
+        }
+      }
+      System.out.println(
+          String.format(
+              "Time left on wins: mean %.2f s, median %d s",
+              won > 0 ? (double) sum / won : 0.0, Math.max(0, median)));
+    }
+
+    private void printGrid(long[] counts) {
+      for (int x = 0; x < size; ++x) {
+        StringBuilder row = new StringBuilder();
+        for (int y = 0; y < size; ++y) {
+          row.append(String.format("%7d", counts[x * size + y]));
+        }
+        System.out.println(row);
+      }
+    }
+  }
+}
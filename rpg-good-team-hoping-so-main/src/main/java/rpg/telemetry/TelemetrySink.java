@@ -0,0 +1,206 @@
+package rpg.telemetry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Collects the per-move telemetry of the game for balancing. Records go into a preallocated batch
+ * on the game thread, full batches are written to compressed files by a background thread. The game
+ * thread never waits: when every batch is waiting for the disk, records are dropped and counted.
+ */
+public final class TelemetrySink {
+  /** Moving up. */
+  public static final int UP = 0;
+
+  /** Moving down. */
+  public static final int DOWN = 1;
+
+  /** Moving left. */
+  public static final int LEFT = 2;
+
+  /** Moving right. */
+  public static final int RIGHT = 3;
+
+  /** Farting. */
+  public static final int FART = 4;
+
+  /** A tick of the game timer. */
+  public static final int TICK = 5;
+
+  /** The end of a session. */
+  public static final int END = 6;
+
+  /** The move bumped into an obstacle or the grid border. */
+  public static final int COLLISION = 1;
+
+  /** The move took a drug. */
+  public static final int DRUG = 1 << 1;
+
+  /** The fart succeeded. */
+  public static final int FART_SUCCESS = 1 << 2;
+
+  /** The fart failed, ending the game. */
+  public static final int FART_FAILURE = 1 << 3;
+
+  /** The session ended in the house. */
+  public static final int WON = 1 << 4;
+
+  /** The session ended by going back to the menu. */
+  public static final int ABANDONED = 1 << 5;
+
+  /** The file extension of the telemetry files. */
+  public static final String EXTENSION = ".rpgt.gz";
+
+  private static final int BATCH_CAPACITY = 4096;
+  private static final int BATCH_COUNT = 4;
+
+  private static TelemetrySink instance = new TelemetrySink(null);
+
+  private final Path directory;
+  private final BlockingQueue<TelemetryBatch> free = new ArrayBlockingQueue<>(BATCH_COUNT);
+  private final BlockingQueue<TelemetryBatch> full = new ArrayBlockingQueue<>(BATCH_COUNT);
+  private final Thread writer;
+  private final long startTime = System.currentTimeMillis();
+  private volatile boolean closing;
+  private TelemetryBatch current;
+  private int fileCount;
+  private long dropped;
+
+  private TelemetrySink(Path directory) {
+    this.directory = directory;
+    if (directory == null) {
+      writer = null;
+      return;
+    }
+    for (int i = 1; i < BATCH_COUNT; ++i) {
+      free.add(new TelemetryBatch(BATCH_CAPACITY));
+    }
+    current = new TelemetryBatch(BATCH_CAPACITY);
+    writer = new Thread(this::writeBatches, "rpg-telemetry");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Gets the sink of the application, which drops every record until telemetry is started.
+   *
+   * @return the telemetry sink
+   */
+  public static TelemetrySink get() {
+    return instance;
+  }
+
+  /**
+   * Starts writing telemetry files to a directory.
+   *
+   * @param directory the directory of the telemetry files, created if missing
+   * @throws IOException if the directory cannot be created
+   */
+  public static void start(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    instance = new TelemetrySink(directory);
+    System.out.println("Telemetry: writing to " + directory.toAbsolutePath());
+  }
+
+  /**
+   * Checks if the records are kept.
+   *
+   * @return true if telemetry was started, false otherwise
+   */
+  public boolean isEnabled() {
+    return directory != null;
+  }
+
+  /**
+   * Records an action of the game. Never blocks.
+   *
+   * @param session the session the record belongs to
+   * @param tick the number of timer ticks since the session started
+   * @param gridSize the width and height of the grid of the session
+   * @param x the x-coordinate of the player
+   * @param y the y-coordinate of the player
+   * @param action the action, one of the action constants
+   * @param flags the outcome flags, flag constants combined
+   * @param timer the remaining seconds of the timer
+   */
+  public void record(
+      long session, int tick, int gridSize, int x, int y, int action, int flags, int timer) {
+    if (directory == null) {
+      return;
+    }
+    if (current == null && (current = free.poll()) == null) {
+      // Every batch is waiting for the disk
+      ++dropped;
+      return;
+    }
+    current.add(session, tick, gridSize, x, y, action, flags, timer);
+    if (current.isFull()) {
+      flush();
+    }
+  }
+
+  /**
+   * Hands the records collected so far to the background writer. Never blocks. Called when the
+   * batch is full and on close, so that each file holds a full batch of many games.
+   */
+  private void flush() {
+    if (current != null && current.size() > 0 && full.offer(current)) {
+      current = free.poll();
+    }
+  }
+
+  /**
+   * Flushes the last records and waits for the writer to write them, when the application stops.
+   */
+  public void close() {
+    if (writer == null) {
+      return;
+    }
+    flush();
+    closing = true;
+    try {
+      // The writer stops once the queue is empty
+      writer.join(TimeUnit.SECONDS.toMillis(2));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (dropped > 0) {
+      System.out.println("Telemetry: " + dropped + " records dropped");
+    }
+  }
+
+  private void writeBatches() {
+    try {
+      while (true) {
+        TelemetryBatch batch = full.poll(100, TimeUnit.MILLISECONDS);
+        if (batch == null) {
+          if (closing) {
+            return;
+          }
+          continue;
+        }
+        Path file =
+            directory.resolve(
+                String.format("telemetry-%d-%05d%s", startTime, fileCount++, EXTENSION));
+        try (DataOutputStream out =
+            new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file))))) {
+          batch.write(out);
+        } catch (IOException e) {
+          System.out.println("Telemetry: cannot write " + file + ", " + e.getMessage());
+        }
+        batch.clear();
+        free.add(batch);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package rpg.ui;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+/**
+ * The dev mode: watches the resource directory and swaps changed styles and sprites into the
+ * running game, so that a design change shows up without restarting the application.
+ */
+public final class DevReloader {
+  // Editors save in bursts of events, a reload waits until the files are quiet for this long
+  private static final long DEBOUNCE_MILLIS = 150;
+
+  private static volatile String stylesheet;
+
+  private DevReloader() {}
+
+  /**
+   * Gets the stylesheet the scenes should use, the last reloaded one in dev mode.
+   *
+   * @return the URL of the stylesheet
+   */
+  public static String stylesheet() {
+    String reloaded = stylesheet;
+    return reloaded != null
+        ? reloaded
+        : DevReloader.class.getResource("/styles.css").toExternalForm();
+  }
+
+  /**
+   * Starts watching a resource directory on a background thread.
+   *
+   * @param resources the resource directory, holding styles.css and the sprites directory
+   */
+  public static void start(Path resources) {
+    Thread thread = new Thread(() -> watch(resources), "rpg-dev-reloader");
+    thread.setDaemon(true);
+    thread.start();
+    System.out.println("Dev mode: watching " + resources.toAbsolutePath());
+  }
+
+  private static void watch(Path resources) {
+    Path sprites = resources.resolve("sprites");
+    try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+      resources.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+      sprites.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+
+      while (true) {
+        WatchKey key = watcher.take();
+        boolean stylesChanged = false;
+        boolean spritesChanged = false;
+
+        // Gather events until the burst is over
+        while (key != null) {
+          for (WatchEvent<?> event : key.pollEvents()) {
+            Path changed = (Path) key.watchable();
+            if (changed.equals(sprites)) {
+              spritesChanged = true;
+            } else if ("styles.css".equals(String.valueOf(event.context()))) {
+              stylesChanged = true;
+            }
+          }
+          key.reset();
+          key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        // Decode on this thread, only the swap runs on the JavaFX thread
+        try {
+          if (stylesChanged) {
+            reloadStyles(resources.resolve("styles.css"));
+          }
+          if (spritesChanged) {
+            SpriteAtlas.reload(sprites);
+            System.out.println("Dev mode: sprites reloaded");
+          }
+        } catch (IOException | RuntimeException e) {
+          // A half-written or corrupt file is picked up again on its next change
+          System.out.println("Dev mode: reload failed, " + e.getMessage());
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("Dev mode: cannot watch " + resources + ", " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Points every open scene to a fresh copy of the stylesheet. JavaFX caches stylesheets by URL, so
+   * each reload gets a new file.
+   */
+  private static void reloadStyles(Path source) throws IOException {
+    Path copy = Files.createTempFile("styles", ".css");
+    copy.toFile().deleteOnExit();
+    Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+    String previous = stylesheet();
+    String next = copy.toUri().toString();
+    stylesheet = next;
+
+    Platform.runLater(
+        () -> {
+          for (Window window : Window.getWindows()) {
+            Scene scene = window.getScene();
+            if (scene != null && scene.getStylesheets().remove(previous)) {
+              scene.getStylesheets().add(next);
+            }
+          }
+          System.out.println("Dev mode: styles reloaded");
+        });
+  }
+}
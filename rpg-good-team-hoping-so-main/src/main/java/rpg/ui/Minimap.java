@@ -0,0 +1,233 @@
+package rpg.ui;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.util.Callback;
+import rpg.Bitboard;
+import rpg.FieldOfView;
+import rpg.RPGMap;
+
+/**
+ * The minimap of the HUD. Draws the map into an image backed by a direct buffer, one block of
+ * pixels per tile on small maps and one pixel per block of tiles on large ones. Blocks are shaded
+ * from the bit counts of the map layers and of the trail of visited tiles. A change only repaints
+ * the pixels of the changed block, without allocating, so its cost does not depend on the map size.
+ */
+public class Minimap {
+  private static final int GRASS_COLOR = 0xFF2E8B2E;
+  private static final int OBSTACLE_COLOR = 0xFF6B6B6B;
+  private static final int DRUG_COLOR = 0xFFE040E0;
+  private static final int HOUSE_COLOR = 0xFFFFD700;
+  private static final int PLAYER_COLOR = 0xFF7B3F00;
+  private static final int TRAIL_COLOR = 0xFFC2A878;
+  private static final int FOG_COLOR = 0xFF000000;
+
+  private final RPGMap map;
+  private final FieldOfView fieldOfView;
+  private final Bitboard visited;
+  // Tiles per pixel when downsampling, 1 otherwise
+  private final int step;
+  // Pixels per tile when upsampling, 1 otherwise
+  private final int scale;
+  private final int width;
+  private final IntBuffer pixels;
+  private final PixelBuffer<IntBuffer> buffer;
+  private final ImageView view;
+  private final int blocks;
+  // The dirty regions of the blocks, created on first update since Rectangle2D is immutable
+  private final Rectangle2D[] regions;
+  private Rectangle2D dirty;
+  private final Callback<PixelBuffer<IntBuffer>, Rectangle2D> dirtyRegion = b -> dirty;
+  private int houseX = -1;
+  private int houseY = -1;
+  private int playerX = -1;
+  private int playerY = -1;
+
+  /**
+   * Constructs the minimap of a map and draws it.
+   *
+   * @param map the map to draw
+   * @param fieldOfView the field of view hiding the unexplored tiles, or null without fog
+   * @param visited the tiles the player walked on, drawn as a trail
+   * @param maxPixels the largest width and height of the minimap in pixels
+   */
+  public Minimap(RPGMap map, FieldOfView fieldOfView, Bitboard visited, int maxPixels) {
+    this.map = map;
+    this.fieldOfView = fieldOfView;
+    this.visited = visited;
+    int size = map.getSize();
+    this.step = Math.max(1, (size + maxPixels - 1) / maxPixels);
+    this.scale = Math.max(1, maxPixels / size);
+    this.blocks = (size + step - 1) / step;
+    this.width = blocks * scale;
+    this.regions = new Rectangle2D[blocks * blocks];
+
+    // The image reads the pixels straight from the direct buffer
+    pixels =
+        ByteBuffer.allocateDirect(width * width * Integer.BYTES)
+            .order(ByteOrder.nativeOrder())
+            .asIntBuffer();
+    buffer = new PixelBuffer<>(width, width, pixels, PixelFormat.getIntArgbPreInstance());
+    view = new ImageView(new WritableImage(buffer));
+
+    // The house never moves, it is found once
+    for (int x = 0; x < size && houseX < 0; ++x) {
+      for (int y = 0; y < size; ++y) {
+        if (map.isHouse(x, y)) {
+          houseX = x;
+          houseY = y;
+          break;
+        }
+      }
+    }
+    if (fieldOfView == null) {
+      // Every block at once from the densities of the layers
+      int[] obstacles = map.getObstacles().densities(step);
+      int[] drugs = map.getDrugs().densities(step);
+      int[] trail = visited.densities(step);
+      for (int blockX = 0; blockX < blocks; ++blockX) {
+        for (int blockY = 0; blockY < blocks; ++blockY) {
+          int block = blockX * blocks + blockY;
+          int tiles = blockArea(blockX, blockY);
+          fill(
+              blockX,
+              blockY,
+              color(blockX, blockY, tiles, obstacles[block], drugs[block], trail[block]));
+        }
+      }
+    } else {
+      for (int blockX = 0; blockX < blocks; ++blockX) {
+        for (int blockY = 0; blockY < blocks; ++blockY) {
+          fill(blockX, blockY, blockColor(blockX, blockY));
+        }
+      }
+    }
+    buffer.updateBuffer(b -> null);
+  }
+
+  /**
+   * Gets the view showing the minimap.
+   *
+   * @return the ImageView of the minimap
+   */
+  public ImageView getView() {
+    return view;
+  }
+
+  /**
+   * Repaints the pixels of a tile after it changed in the map.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   */
+  public void updateTile(int x, int y) {
+    int blockX = x / step;
+    int blockY = y / step;
+    if (playerX >= 0 && blockX == playerX / step && blockY == playerY / step) {
+      // The player stays drawn over its block
+      return;
+    }
+    fill(blockX, blockY, blockColor(blockX, blockY));
+    update(blockX, blockY);
+  }
+
+  /**
+   * Moves the player marker to a tile.
+   *
+   * @param x the x-coordinate of the player
+   * @param y the y-coordinate of the player
+   */
+  public void updatePlayer(int x, int y) {
+    boolean placed = playerX >= 0;
+    int oldBlockX = playerX / step;
+    int oldBlockY = playerY / step;
+    playerX = x;
+    playerY = y;
+    if (placed && (oldBlockX != x / step || oldBlockY != y / step)) {
+      fill(oldBlockX, oldBlockY, blockColor(oldBlockX, oldBlockY));
+      update(oldBlockX, oldBlockY);
+    }
+    fill(x / step, y / step, PLAYER_COLOR);
+    update(x / step, y / step);
+  }
+
+  /**
+   * Computes the color of a block of tiles from the counts of the map layers in the block. Only
+   * explored tiles count in fog-of-war mode.
+   */
+  private int blockColor(int blockX, int blockY) {
+    int x0 = blockX * step;
+    int y0 = blockY * step;
+    int x1 = Math.min(map.getSize(), x0 + step);
+    int y1 = Math.min(map.getSize(), y0 + step);
+    Bitboard explored = fieldOfView != null ? fieldOfView.getExplored() : null;
+    int tiles = explored != null ? explored.countRegion(x0, y0, x1, y1) : blockArea(blockX, blockY);
+    int obstacles = map.getObstacles().countRegion(x0, y0, x1, y1, explored);
+    int drugs = map.getDrugs().countRegion(x0, y0, x1, y1, explored);
+    int trail = visited.countRegion(x0, y0, x1, y1, explored);
+    return color(blockX, blockY, tiles, obstacles, drugs, trail);
+  }
+
+  private int blockArea(int blockX, int blockY) {
+    int size = map.getSize();
+    return (Math.min(size, (blockX + 1) * step) - blockX * step)
+        * (Math.min(size, (blockY + 1) * step) - blockY * step);
+  }
+
+  /**
+   * Chooses the color of a block: the house or a drug if the block holds one, otherwise grass
+   * shaded by the share of obstacles and lightened by the share of visited tiles, or fog if no tile
+   * of the block was seen.
+   */
+  private int color(int blockX, int blockY, int tiles, int obstacles, int drugs, int trail) {
+    boolean house =
+        houseX >= 0
+            && houseX / step == blockX
+            && houseY / step == blockY
+            && (fieldOfView == null || fieldOfView.isExplored(houseX, houseY));
+    if (house) {
+      return HOUSE_COLOR;
+    } else if (drugs > 0) {
+      return DRUG_COLOR;
+    } else if (tiles == 0) {
+      return FOG_COLOR;
+    }
+    int ground = mix(GRASS_COLOR, OBSTACLE_COLOR, obstacles * 256 / tiles);
+    return mix(ground, TRAIL_COLOR, trail * 256 / tiles);
+  }
+
+  private static int mix(int from, int to, int weight) {
+    int color = 0xFF000000;
+    for (int shift = 0; shift < 24; shift += 8) {
+      int a = from >> shift & 0xFF;
+      int b = to >> shift & 0xFF;
+      color |= (a + (b - a) * weight / 256) << shift;
+    }
+    return color;
+  }
+
+  /** Fills the pixels of a block, the map rows being the image rows. */
+  private void fill(int blockX, int blockY, int color) {
+    for (int row = blockX * scale; row < (blockX + 1) * scale; ++row) {
+      for (int column = blockY * scale; column < (blockY + 1) * scale; ++column) {
+        pixels.put(row * width + column, color);
+      }
+    }
+  }
+
+  /** Tells the image that only the pixels of a block changed. */
+  private void update(int blockX, int blockY) {
+    int block = blockX * blocks + blockY;
+    if (regions[block] == null) {
+      regions[block] = new Rectangle2D(blockY * scale, blockX * scale, scale, scale);
+    }
+    dirty = regions[block];
+    buffer.updateBuffer(dirtyRegion);
+  }
+}
@@ -0,0 +1,97 @@
+package rpg.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+
+/**
+ * Applies changes of observable values to the scene at most once per pulse. A change only marks its
+ * source dirty, the update then runs on the next pulse with the latest value, however many times
+ * the source changed in between. The timer stops after a pulse leaving nothing dirty and starts
+ * again on the next change.
+ */
+public class PulseCoalescer extends AnimationTimer {
+  private final List<Observable> sources = new ArrayList<>();
+  private final List<InvalidationListener> listeners = new ArrayList<>();
+  private final List<Runnable> updates = new ArrayList<>();
+  private boolean[] dirty = new boolean[4];
+  private boolean started;
+  private boolean running;
+
+  /**
+   * Runs an update on the next pulse after each change of a source, and on the first pulse.
+   *
+   * @param source the observable value, read by the update
+   * @param update the update applying the value to the scene
+   */
+  public void bind(Observable source, Runnable update) {
+    int index = updates.size();
+    if (index == dirty.length) {
+      dirty = Arrays.copyOf(dirty, index << 1);
+    }
+    InvalidationListener listener = observable -> markDirty(index);
+    source.addListener(listener);
+    sources.add(source);
+    listeners.add(listener);
+    updates.add(update);
+    markDirty(index);
+  }
+
+  private void markDirty(int index) {
+    dirty[index] = true;
+    if (started && !running) {
+      running = true;
+      super.start();
+    }
+  }
+
+  /** Starts applying the changes, beginning with the updates pending since binding. */
+  @Override
+  public void start() {
+    started = true;
+    if (!running) {
+      running = true;
+      super.start();
+    }
+  }
+
+  /** Stops applying the changes until the next {@link #start}. */
+  @Override
+  public void stop() {
+    started = false;
+    running = false;
+    super.stop();
+  }
+
+  /** Stops the updates and removes the listeners from every source. */
+  public void unbindAll() {
+    stop();
+    for (int i = 0; i < sources.size(); ++i) {
+      sources.get(i).removeListener(listeners.get(i));
+    }
+    sources.clear();
+    listeners.clear();
+    updates.clear();
+  }
+
+  @Override
+  public void handle(long now) {
+    for (int i = 0; i < updates.size(); ++i) {
+      if (dirty[i]) {
+        // Clear first, the update reads the value which validates the source again
+        dirty[i] = false;
+        updates.get(i).run();
+      }
+    }
+    for (int i = 0; i < updates.size(); ++i) {
+      if (dirty[i]) {
+        return;
+      }
+    }
+    running = false;
+    super.stop();
+  }
+}
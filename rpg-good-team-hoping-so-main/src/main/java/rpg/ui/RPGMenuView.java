@@ -11,6 +11,8 @@ import javafx.scene.layout.BackgroundSize;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import rpg.RPGController;
+import rpg.audio.Music;
+import rpg.stats.CareerStats;
 
 /** Represents the view component of the RPG menu. */
 public class RPGMenuView {
@@ -55,12 +57,15 @@ public class RPGMenuView {
 
     // Create and configure the scene
     Scene scene = new Scene(menuLayout, 800, 600);
-    scene.getStylesheets().add(getClass().getResource("/styles.css").toExternalForm());
+    scene.getStylesheets().add(DevReloader.stylesheet());
 
     // Set the scene and stage properties
     stage.setScene(scene);
     stage.setTitle("Try not to poop! v6.9");
     stage.show();
+
+    // Crossfade to the menu music, the game song keeps its player
+    Music.get().play(Music.MENU, 1.0);
   }
 
   /**
@@ -95,6 +100,14 @@ public class RPGMenuView {
     outcomeLabel.getStyleClass().add("outcome-label");
     menuLayout.getChildren().add(outcomeLabel);
 
+    // Career statistics of every game played, once there is one
+    String stats = CareerStats.get().summary();
+    if (!stats.isEmpty()) {
+      Label statsLabel = new Label(stats);
+      statsLabel.getStyleClass().add("stats-label");
+      menuLayout.getChildren().add(statsLabel);
+    }
+
     return menuLayout;
   }
 
@@ -151,7 +164,7 @@ public class RPGMenuView {
    * @param exitButton the exit button
    */
   private void setupButtonActions(Button startButton, Button exitButton) {
-    startButton.setOnAction(event -> controller.initialize(stage));
+    startButton.setOnAction(event -> controller.startGame(stage));
     exitButton.setOnAction(event -> stage.close());
   }
 
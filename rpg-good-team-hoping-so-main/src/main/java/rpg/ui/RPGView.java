@@ -1,39 +1,59 @@
 package rpg.ui;
 
-import java.net.URL;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.geometry.Rectangle2D;
-import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.TilePane;
 import javafx.scene.layout.VBox;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
 import javafx.stage.Stage;
-import javafx.util.Duration;
+import rpg.Bitboard;
+import rpg.FieldOfView;
 import rpg.RPGController;
+import rpg.RPGMap;
+import rpg.RPGModel;
+import rpg.audio.Music;
 
 /** The view class for the RPG game. */
 public class RPGView {
+  private static final int PANIC_SECONDS = 5;
+  private static final int MINIMAP_PIXELS = 80;
+  private static final double EXPLORED_OPACITY = 0.35;
+  private static final double FOG_EDGE_OPACITY = 0.1;
+  // Timer texts for 0 to 99 seconds, so that a tick never formats a string
+  private static final String[] TIMER_TEXTS = new String[100];
+
+  static {
+    for (int seconds = 0; seconds < TIMER_TEXTS.length; ++seconds) {
+      TIMER_TEXTS[seconds] = formatTimerText(seconds);
+    }
+  }
+
   private TilePane tiles;
   private StackPane[][] sprites;
   private RPGController controller;
-  private ImageView playerImage;
+  private TileLayers layers;
+  private Minimap minimap;
   private Label timerLabel;
+  private Label difficultyLabel;
   private ProgressBar cooldownBar;
-  private MediaPlayer mediaPlayer;
   private VBox gameContainer;
   private HBox controlsContainer;
+  private SpriteAtlas atlas;
+  private SpriteAnimator animator;
+  private int playerAnimation;
+  private PulseCoalescer hud;
+  private boolean panicMode;
+  // The explored tiles and their neighbours in fog-of-war mode
+  private Bitboard fogEdge;
 
   /**
    * Constructs a new RPGView object.
@@ -47,24 +67,15 @@ public class RPGView {
     this.sprites = sprites;
     this.controller = controller;
     this.timerLabel = new Label();
+    this.difficultyLabel = new Label();
     this.cooldownBar = new ProgressBar();
     this.gameContainer = new VBox();
     this.controlsContainer = new HBox();
+    this.hud = new PulseCoalescer();
 
-    // Load the game music file
-    URL musicUrl = getClass().getResource("/sounds/song-poopy.mp3");
-    Media media = new Media(musicUrl.toString());
-
-    // Create a MediaPlayer object
-    mediaPlayer = new MediaPlayer(media);
-    mediaPlayer.setOnEndOfMedia(
-        () -> {
-          mediaPlayer.seek(Duration.ZERO);
-          mediaPlayer.play();
-        });
-
-    playerImage = new ImageView(new Image("sprites/poopy.png"));
-    playerImage.setViewport(new Rectangle2D(0, 0, 50, 50));
+    // Every sprite is a viewport on the atlas, animated by a single clock
+    atlas = SpriteAtlas.get();
+    animator = new SpriteAnimator(atlas);
   }
 
   /**
@@ -73,25 +84,15 @@ public class RPGView {
    * @param stage the Stage to display the scene on
    */
   public void setupGameScene(Stage stage) {
-    VBox root = new VBox();
-    root.getChildren().addAll(tiles, getGameContainer());
-
-    Scene scene = new Scene(root);
-    scene.getStylesheets().add(getClass().getResource("/styles.css").toExternalForm());
+    Scene scene = new Scene(createGameRoot());
+    scene.getStylesheets().add(DevReloader.stylesheet());
 
     // Event handler for key releases
     scene.setOnKeyReleased(
         new EventHandler<KeyEvent>() {
           @Override
           public void handle(KeyEvent event) {
-            sprites[controller.getModel().getX()][controller.getModel().getY()]
-                .getChildren()
-                .remove(1);
-
-            // Perform player action based on the released key
-            controller.getModel().actPlayer(event.getCode());
-            // Update player position on the game board
-            updatePlayerPosition(controller.getModel().getX(), controller.getModel().getY());
+            handleKey(event.getCode());
           }
         });
 
@@ -99,6 +100,37 @@ public class RPGView {
     stage.show();
   }
 
+  /**
+   * Creates the root of the game display, the tiles and the game container, to be placed in a
+   * scene.
+   *
+   * @return the root node of the game
+   */
+  public VBox createGameRoot() {
+    VBox root = new VBox();
+    root.getChildren().addAll(tiles, getGameContainer());
+    return root;
+  }
+
+  /**
+   * Acts on a released key and updates the board, unless the game is over.
+   *
+   * @param code the key code, in the keys of the single-player game
+   */
+  public void handleKey(KeyCode code) {
+    if (controller.isMenuDisplayed()) {
+      return;
+    }
+    // Perform player action based on the released key
+    controller.getModel().actPlayer(code);
+    // A winning move or a failed fart ends the game and tears the board down
+    if (controller.isMenuDisplayed()) {
+      return;
+    }
+    // Update player position on the game board
+    updatePlayerPosition(controller.getModel().getX(), controller.getModel().getY());
+  }
+
   /**
    * Initializes the RPGView instance by setting up the controls container, adding the menu button,
    * playing the game music, and initializing the sprites.
@@ -106,14 +138,36 @@ public class RPGView {
   public void initialize() {
     setupControlsContainer();
     addMenuButton();
-    mediaPlayer.play();
+    if (controller.getVolume() > 0) {
+      Music.get().play(Music.GAME, controller.getVolume());
+    }
     setupGameContainer();
     initializeSprites();
+    bindHud();
+    animator.start();
+  }
+
+  /**
+   * Binds the timer label, the difficulty label, the cooldown bar and the player sprite to the model
+   * properties, applying at most one change of each per pulse.
+   */
+  private void bindHud() {
+    RPGModel model = controller.getModel();
+    hud.bind(model.timerSecondsProperty(), () -> setTimerText(model.timerSeconds()));
+    hud.bind(model.difficultyProperty(), () -> setDifficultyText(model.getDifficulty()));
+    hud.bind(
+        model.cooldownProgressProperty(),
+        () -> cooldownBar.setProgress(model.cooldownProgressProperty().get()));
+    hud.bind(model.playerStateProperty(), () -> updatePlayerState(model.getPlayerState()));
+    hud.start();
   }
 
-  /** Sets up the controls container by adding the timer label and cooldown bar. */
+  /** Sets up the controls container by adding the timer and difficulty labels and cooldown bar. */
   private void setupControlsContainer() {
+    timerLabel.getStyleClass().add("timer-text");
     controlsContainer.getChildren().add(timerLabel);
+    difficultyLabel.getStyleClass().add("difficulty-text");
+    controlsContainer.getChildren().add(difficultyLabel);
 
     // Set preferred width and style class for cooldown bar
     cooldownBar.setPrefWidth(200);
@@ -121,43 +175,32 @@ public class RPGView {
     cooldownBar.setProgress(1.0);
     controlsContainer.getChildren().add(cooldownBar);
 
+    // Add the minimap next to the timer and the cooldown bar
+    RPGModel model = controller.getModel();
+    minimap =
+        new Minimap(model.getMap(), model.getFieldOfView(), model.getVisited(), MINIMAP_PIXELS);
+    minimap.getView().getStyleClass().add("minimap");
+    controlsContainer.getChildren().add(minimap.getView());
+    HBox.setMargin(minimap.getView(), new Insets(10));
+
     // Set controls container and margins for timer label and cooldown bar
     controlsContainer.setAlignment(Pos.TOP_RIGHT);
     controlsContainer.setMargin(timerLabel, new Insets(10));
+    controlsContainer.setMargin(difficultyLabel, new Insets(10));
     controlsContainer.setMargin(cooldownBar, new Insets(10));
   }
 
   /**
-   * Initializes the sprites by loading and adding the necessary images to the sprite stack panes.
+   * Initializes the sprites by creating the tile panes and showing the generated map in their
+   * layers.
    */
   private void initializeSprites() {
-    // Load sprite images
-    Image grassImage = new Image("sprites/grass-tile.png");
-    Image drugImage = new Image("sprites/drug.png");
-    Image obstacleImageRock = new Image("sprites/obstacle-rock.png");
-    Image obstacleImagePanel = new Image("sprites/obstacle-panel.png");
-    Image houseImage = new Image("sprites/house.gif");
+    RPGMap map = controller.getModel().getMap();
 
     for (int i = 0; i < sprites.length; ++i) {
       for (int j = 0; j < sprites[i].length; ++j) {
         sprites[i][j] = new StackPane();
         sprites[i][j].setStyle("-fx-background-color: #008000;");
-        sprites[i][j].getChildren().add(makeView(grassImage));
-
-        if (i == 0 && j == 5) {
-          // Add house image to the specific location
-          sprites[i][j].getChildren().clear();
-          sprites[i][j].getChildren().add(makeView(houseImage));
-        } else {
-          if (Math.random() < 0.1) {
-            // Add obstacles or drugs randomly
-            sprites[i][j].getChildren().add(makeView(obstacleImageRock));
-          } else if (Math.random() < 0.1) {
-            sprites[i][j].getChildren().add(makeView(obstacleImagePanel));
-          } else if (Math.random() < 0.05) {
-            sprites[i][j].getChildren().add(makeView(drugImage));
-          }
-        }
 
         // Add sprite to the tiles container
         tiles.getChildren().add(sprites[i][j]);
@@ -166,6 +209,52 @@ public class RPGView {
         tiles.setPadding(new Insets(0, 0, 0, 0));
       }
     }
+
+    // In fog-of-war mode every tile starts hidden over a black background
+    if (controller.getModel().getFieldOfView() != null) {
+      tiles.setStyle("-fx-background-color: #000000;");
+      fogEdge = new Bitboard(sprites.length);
+      for (StackPane[] row : sprites) {
+        for (StackPane sprite : row) {
+          sprite.setOpacity(0.0);
+        }
+      }
+    }
+
+    // Every tile gets its views once, later changes only re-point or toggle them
+    layers = new TileLayers(sprites, atlas);
+    for (int i = 0; i < sprites.length; ++i) {
+      for (int j = 0; j < sprites[i].length; ++j) {
+        // Show the house, obstacles or drugs generated in the map
+        switch (map.getTile(i, j)) {
+          case RPGMap.HOUSE:
+            layers.setBase(i, j, SpriteAtlas.HOUSE);
+            animator.add(
+                layers.getBase(i, j),
+                SpriteAtlas.HOUSE,
+                atlas.getHouseFrames(),
+                SpriteAtlas.HOUSE_FRAME_NANOS);
+            break;
+          case RPGMap.ROCK:
+            layers.setItem(i, j, SpriteAtlas.ROCK);
+            break;
+          case RPGMap.PANEL:
+            layers.setItem(i, j, SpriteAtlas.PANEL);
+            break;
+          case RPGMap.DRUG:
+            layers.setItem(i, j, SpriteAtlas.DRUG);
+            break;
+          default:
+            break;
+        }
+      }
+    }
+
+    // The player animation follows the actor layer from tile to tile
+    ImageView player =
+        layers.moveActor(
+            controller.getModel().getX(), controller.getModel().getY(), SpriteAtlas.PLAYER);
+    playerAnimation = animator.add(player, SpriteAtlas.PLAYER, 1, SpriteAtlas.HOUSE_FRAME_NANOS);
   }
 
   /**
@@ -211,106 +300,141 @@ public class RPGView {
   public void updatePlayerPosition(int x, int y) {
     // Check if the player is on a drug tile
     isDrug(x, y);
+    // Whatever was on the tile is gone once the player stands on it
+    controller.getModel().clearTile(x, y);
+    if (layers.hasItem(x, y)) {
+      layers.setItem(x, y, -1);
+      minimap.updateTile(x, y);
+    }
 
-    // Clear the current sprite and set the grass tile as the background
-    sprites[x][y].getChildren().clear();
-    Image grassImage = new Image("sprites/grass-tile.png");
-    sprites[x][y].getChildren().add(makeView(grassImage));
-
-    // Add the player's image to the sprite at the updated position
-    sprites[x][y].getChildren().add(playerImage);
-    System.out.println("playerImage set to " + x + "," + y);
+    // Hide the player on its previous tile and show it on the updated position
+    animator.setView(playerAnimation, layers.moveActor(x, y, animator.getFrame(playerAnimation)));
+    updateFog(x, y);
+    minimap.updatePlayer(x, y);
   }
 
   /**
-   * Updates the player state in the view based on the provided state.
+   * Redraws the item of a tile from the map after a rewind restored it.
    *
-   * @param state the state of the player
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
    */
-  public void updatePlayerState(int state) {
-    if (state > 2 || state < 0) {
-      return;
-    }
-    playerImage.setViewport(new Rectangle2D(0, state * 50, 50, 50));
+  public void redrawTile(int x, int y) {
+    layers.setItem(x, y, controller.getModel().getMap().isDrug(x, y) ? SpriteAtlas.DRUG : -1);
+    minimap.updateTile(x, y);
   }
 
   /**
-   * Creates and returns an ImageView object with the provided image.
+   * Lifts the fog from the tiles the player now sees and dims the ones it no longer sees, only
+   * touching the tiles whose visibility changed. The unexplored tiles next to explored ones show
+   * faintly, marking the edge of the fog.
    *
-   * @param image the image for the ImageView
-   * @return an ImageView object with the provided image
+   * @param x the x-coordinate of the player
+   * @param y the y-coordinate of the player
    */
-  private ImageView makeView(Image image) {
-    ImageView view = new ImageView();
-    view.setImage(image);
-    return view;
+  private void updateFog(int x, int y) {
+    FieldOfView fieldOfView = controller.getModel().getFieldOfView();
+    if (fieldOfView == null) {
+      return;
+    }
+    fieldOfView.moveTo(x, y);
+    fieldOfView.update();
+    int size = sprites.length;
+    for (int i = 0; i < fieldOfView.changedCount(); ++i) {
+      int tile = fieldOfView.changedTile(i);
+      int tileX = tile / size;
+      int tileY = tile % size;
+      if (fieldOfView.isVisible(tileX, tileY)) {
+        sprites[tileX][tileY].setOpacity(1.0);
+        minimap.updateTile(tileX, tileY);
+      } else {
+        sprites[tileX][tileY].setOpacity(EXPLORED_OPACITY);
+      }
+    }
+
+    // Only the tiles around the player can have joined the edge
+    Bitboard explored = fieldOfView.getExplored();
+    explored.dilate(fogEdge);
+    int reach = fieldOfView.getRadius() + 1;
+    for (int i = Math.max(0, x - reach); i <= Math.min(size - 1, x + reach); ++i) {
+      for (int j = Math.max(0, y - reach); j <= Math.min(size - 1, y + reach); ++j) {
+        if (fogEdge.get(i, j) && !explored.get(i, j)) {
+          sprites[i][j].setOpacity(FOG_EDGE_OPACITY);
+        }
+      }
+    }
   }
 
   /**
-   * Sets the text of the timer label and applies the specified style based on the panic mode.
+   * Updates the player state in the view based on the provided state.
    *
-   * @param text the text to set on the timer label
-   * @param panicMode a flag indicating whether panic mode is active or not
+   * @param state the state of the player
    */
-  public void setTimerText(String text, boolean panicMode) {
-    timerLabel.setText(text);
-    if (panicMode) {
-      timerLabel.getStyleClass().add("panic-mode");
-    } else {
-      timerLabel.getStyleClass().add("timer-text");
+  public void updatePlayerState(int state) {
+    if (state > 2 || state < 0) {
+      return;
     }
+    animator.play(playerAnimation, SpriteAtlas.PLAYER + state, 1);
   }
 
   /**
-   * Updates the cooldown progress of the cooldown bar based on the provided value.
+   * Sets the text of the timer label and switches its style when entering or leaving panic mode.
    *
-   * @param cooldownProgress the progress value of the cooldown bar
+   * @param seconds the remaining seconds of the timer
    */
-  public void cooldownProgress(double cooldownProgress) {
-    // Check if the fart is on cooldown
-    if (controller.getModel().isFartOnCooldown()) {
-      // Update the cooldown bar progress
-      cooldownBar.setProgress(cooldownProgress);
-    } else {
-      // Reset the cooldown bar to full progress
-      cooldownBar.setProgress(1.0);
+  private void setTimerText(int seconds) {
+    boolean panic = seconds <= PANIC_SECONDS;
+    timerLabel.setText(
+        seconds >= 0 && seconds < TIMER_TEXTS.length
+            ? TIMER_TEXTS[seconds]
+            : formatTimerText(seconds));
+    if (panic != panicMode) {
+      panicMode = panic;
+      timerLabel.getStyleClass().remove(panic ? "timer-text" : "panic-mode");
+      timerLabel.getStyleClass().add(panic ? "panic-mode" : "timer-text");
     }
   }
 
-  /** Stops the game music. */
-  public void stopMusic() {
-    mediaPlayer.stop();
+  /**
+   * Sets the text of the difficulty label.
+   *
+   * @param difficulty the probability of losing the map under optimal play, NaN while not rated
+   */
+  private void setDifficultyText(double difficulty) {
+    difficultyLabel.setText(
+        Double.isNaN(difficulty)
+            ? "Difficulty --"
+            : String.format("Difficulty %.0f%%", difficulty * 100));
   }
 
   /**
-   * Checks if the provided stack pane contains an image with the specified image name.
+   * Formats the timer value into a string representation.
    *
-   * @param pane the stack pane to check
-   * @param imageName the name of the image
-   * @return true if the stack pane contains the image, false otherwise
+   * @param seconds the remaining seconds of the timer
+   * @return the formatted timer text
    */
-  private boolean containsImage(StackPane pane, String imageName) {
-    for (Node node : pane.getChildren()) {
-      if (node instanceof ImageView) {
-        // Check if the image URL contains the specified image name
-        Image image = ((ImageView) node).getImage();
-        if (image.getUrl().contains(imageName)) {
-          return true;
-        }
-      }
-    }
-    return false;
+  private static String formatTimerText(int seconds) {
+    int minutes = seconds / 60;
+    int remainingSeconds = seconds % 60;
+    return String.format("%02d:%02d", minutes, remainingSeconds);
+  }
+
+  /** Stops the sprite animations and unbinds the HUD from the model. */
+  public void stopAnimations() {
+    animator.stop();
+    animator.clear();
+    hud.unbindAll();
   }
 
   /**
-   * Checks if the specified coordinates contain a drug image and calls the controller's takeDrugs()
+   * Checks if the specified coordinates contain a drug and calls the controller's takeDrugs()
    * method if true.
    *
    * @param x the x-coordinate
    * @param y the y-coordinate
    */
   public void isDrug(int x, int y) {
-    if (containsImage(sprites[x][y], "drug.png")) {
+    if (controller.getModel().getMap().isDrug(x, y)) {
       playSound("drugs-sound.mp3");
       controller.takeDrugs();
     }
@@ -324,8 +448,7 @@ public class RPGView {
    * @return true if there is an obstacle, false otherwise
    */
   public boolean hasObstacleAt(int x, int y) {
-    if (containsImage(sprites[x][y], "obstacle-rock.png")
-        || containsImage(sprites[x][y], "obstacle-panel.png")) {
+    if (controller.getModel().getMap().isObstacle(x, y)) {
       playSound("colision-sound.mp3");
       return true;
     } else {
@@ -339,9 +462,7 @@ public class RPGView {
    * @param fileName the name of the sound file
    */
   public void playSound(String fileName) {
-    Media sound = new Media(getClass().getResource("/sounds/" + fileName).toExternalForm());
-    MediaPlayer mediaPlayer = new MediaPlayer(sound);
-    mediaPlayer.play();
+    Music.get().playEffect(fileName, controller.getVolume());
   }
 
   /**
@@ -352,6 +473,6 @@ public class RPGView {
    * @return true if the coordinates are inside a house, false otherwise
    */
   public boolean inHouse(int x, int y) {
-    return containsImage(sprites[x][y], "house.gif");
+    return controller.getModel().getMap().isHouse(x, y);
   }
 }
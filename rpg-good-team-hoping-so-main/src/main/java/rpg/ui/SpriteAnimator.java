@@ -0,0 +1,159 @@
+package rpg.ui;
+
+import java.util.Arrays;
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.beans.WeakInvalidationListener;
+import javafx.scene.image.ImageView;
+
+/**
+ * The animation clock of the atlas sprites. Each pulse it derives the current frame of every
+ * animated view from the pulse time, and re-points the viewport only when the frame changed. The
+ * timer only runs while at least one view has more than one frame. House animations follow the
+ * frame count of a reloaded atlas.
+ */
+public class SpriteAnimator extends AnimationTimer {
+  private final SpriteAtlas atlas;
+  // Held strongly here, the atlas only keeps a weak reference to a finished game
+  private final InvalidationListener reloadListener = observable -> refreshHouseFrames();
+  private ImageView[] views = new ImageView[8];
+  private int[] firstFrames = new int[8];
+  private int[] frameCounts = new int[8];
+  private long[] frameNanos = new long[8];
+  private int[] currentFrames = new int[8];
+  private int size;
+  private int animated;
+  private boolean started;
+  private boolean running;
+
+  /**
+   * Constructs an animator for views on an atlas.
+   *
+   * @param atlas the atlas the views display
+   */
+  public SpriteAnimator(SpriteAtlas atlas) {
+    this.atlas = atlas;
+    atlas.imageProperty().addListener(new WeakInvalidationListener(reloadListener));
+  }
+
+  /**
+   * Animates a view over consecutive frames of the atlas.
+   *
+   * @param view the view to animate
+   * @param firstFrame the first frame of the animation
+   * @param frameCount the number of frames of the animation
+   * @param nanosPerFrame the duration of each frame in nanoseconds
+   * @return the handle of the animated view
+   */
+  public int add(ImageView view, int firstFrame, int frameCount, long nanosPerFrame) {
+    if (size == views.length) {
+      int capacity = size << 1;
+      views = Arrays.copyOf(views, capacity);
+      firstFrames = Arrays.copyOf(firstFrames, capacity);
+      frameCounts = Arrays.copyOf(frameCounts, capacity);
+      frameNanos = Arrays.copyOf(frameNanos, capacity);
+      currentFrames = Arrays.copyOf(currentFrames, capacity);
+    }
+    views[size] = view;
+    frameNanos[size] = nanosPerFrame;
+    frameCounts[size] = 0;
+    play(size, firstFrame, frameCount);
+    return size++;
+  }
+
+  /**
+   * Switches an animated view to another animation, applied at once.
+   *
+   * @param handle the handle returned by {@link #add}
+   * @param firstFrame the first frame of the animation
+   * @param frameCount the number of frames of the animation
+   */
+  public void play(int handle, int firstFrame, int frameCount) {
+    if (frameCounts[handle] > 1) {
+      --animated;
+    }
+    if (frameCount > 1) {
+      ++animated;
+    }
+    firstFrames[handle] = firstFrame;
+    frameCounts[handle] = frameCount;
+    currentFrames[handle] = firstFrame;
+    views[handle].setViewport(atlas.getViewport(firstFrame));
+    updateRunning();
+  }
+
+  /**
+   * Moves an animation to another view, which shows the current frame at once.
+   *
+   * @param handle the handle returned by {@link #add}
+   * @param view the view to animate instead
+   */
+  public void setView(int handle, ImageView view) {
+    views[handle] = view;
+    view.setViewport(atlas.getViewport(currentFrames[handle]));
+  }
+
+  /**
+   * Gets the frame an animated view currently shows.
+   *
+   * @param handle the handle returned by {@link #add}
+   * @return the current atlas frame
+   */
+  public int getFrame(int handle) {
+    return currentFrames[handle];
+  }
+
+  /** Stops animating every view. */
+  public void clear() {
+    Arrays.fill(views, 0, size, null);
+    size = 0;
+    animated = 0;
+    updateRunning();
+  }
+
+  /** Starts animating, the pulses only running while a view has several frames. */
+  @Override
+  public void start() {
+    started = true;
+    updateRunning();
+  }
+
+  /** Stops animating until the next {@link #start}. */
+  @Override
+  public void stop() {
+    started = false;
+    updateRunning();
+  }
+
+  private void refreshHouseFrames() {
+    for (int i = 0; i < size; ++i) {
+      if (firstFrames[i] == SpriteAtlas.HOUSE && frameCounts[i] != atlas.getHouseFrames()) {
+        play(i, SpriteAtlas.HOUSE, atlas.getHouseFrames());
+      }
+    }
+  }
+
+  private void updateRunning() {
+    boolean run = started && animated > 0;
+    if (run != running) {
+      running = run;
+      // Frames derive from the pulse time, so a resumed animation picks up where it should be
+      if (run) {
+        super.start();
+      } else {
+        super.stop();
+      }
+    }
+  }
+
+  @Override
+  public void handle(long now) {
+    for (int i = 0; i < size; ++i) {
+      int frame = firstFrames[i] + (int) (now / frameNanos[i] % frameCounts[i]);
+      if (frame != currentFrames[i]) {
+        currentFrames[i] = frame;
+        views[i].setViewport(atlas.getViewport(frame));
+      }
+    }
+  }
+}
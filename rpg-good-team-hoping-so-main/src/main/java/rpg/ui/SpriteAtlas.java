@@ -0,0 +1,258 @@
+package rpg.ui;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import org.w3c.dom.Element;
+
+/**
+ * Packs every game sprite into a single texture when first used, along with a table of precomputed
+ * frame viewports, so that every tile and the player share one image and changing a sprite only
+ * re-points a viewport.
+ */
+public final class SpriteAtlas {
+  /** The grass tile frame. */
+  public static final int GRASS = 0;
+
+  /** The rock obstacle frame. */
+  public static final int ROCK = 1;
+
+  /** The panel obstacle frame. */
+  public static final int PANEL = 2;
+
+  /** The drug frame. */
+  public static final int DRUG = 3;
+
+  /** The first player frame, followed by one frame per player state. */
+  public static final int PLAYER = 4;
+
+  /** The number of player frames, one per row of poopy.png. */
+  public static final int PLAYER_FRAMES = 3;
+
+  /** The first frame of the house animation. */
+  public static final int HOUSE = PLAYER + PLAYER_FRAMES;
+
+  /** The duration of one frame of the house animation, as set in house.gif. */
+  public static final long HOUSE_FRAME_NANOS = 200_000_000L;
+
+  private static final int CELL = 64;
+  private static final int COLUMNS = 8;
+  private static final int PLAYER_SIZE = 50;
+
+  private static SpriteAtlas instance;
+
+  private final ObjectProperty<Image> image = new SimpleObjectProperty<>(this, "image");
+  private final Path directory;
+  private Rectangle2D[] viewports;
+  private int houseFrames;
+
+  /**
+   * Packs the atlas from the sprites on the classpath, or from a sprite directory.
+   *
+   * @param directory the directory holding the sprite files, null for the classpath
+   */
+  private SpriteAtlas(Path directory) {
+    this.directory = directory;
+    BufferedImage[] house = readGifFrames("house.gif");
+    houseFrames = house.length;
+    int frameCount = HOUSE + houseFrames;
+    int rows = (frameCount + COLUMNS - 1) / COLUMNS;
+    WritableImage packed = new WritableImage(COLUMNS * CELL, rows * CELL);
+    viewports = new Rectangle2D[frameCount];
+
+    // Copy the static sprites, then the player rows and the house frames
+    PixelWriter writer = packed.getPixelWriter();
+    copy(writer, loadImage("grass-tile.png"), 0, 0, CELL, GRASS);
+    copy(writer, loadImage("obstacle-rock.png"), 0, 0, CELL, ROCK);
+    copy(writer, loadImage("obstacle-panel.png"), 0, 0, CELL, PANEL);
+    copy(writer, loadImage("drug.png"), 0, 0, CELL, DRUG);
+    Image player = loadImage("poopy.png");
+    for (int state = 0; state < PLAYER_FRAMES; ++state) {
+      copy(writer, player, 0, state * PLAYER_SIZE, PLAYER_SIZE, PLAYER + state);
+    }
+    int[] argb = new int[CELL * CELL];
+    for (int frame = 0; frame < houseFrames; ++frame) {
+      house[frame].getRGB(0, 0, CELL, CELL, argb, 0, CELL);
+      writer.setPixels(
+          cellX(HOUSE + frame),
+          cellY(HOUSE + frame),
+          CELL,
+          CELL,
+          PixelFormat.getIntArgbInstance(),
+          argb,
+          0,
+          CELL);
+      viewports[HOUSE + frame] =
+          new Rectangle2D(cellX(HOUSE + frame), cellY(HOUSE + frame), CELL, CELL);
+    }
+    image.set(packed);
+  }
+
+  /**
+   * Gets the atlas, packing it on first call.
+   *
+   * @return the shared sprite atlas
+   */
+  public static SpriteAtlas get() {
+    if (instance == null) {
+      instance = new SpriteAtlas(null);
+    }
+    return instance;
+  }
+
+  /**
+   * Packs the atlas again from a sprite directory on the calling thread, then swaps the new texture
+   * and viewports into the shared atlas on the JavaFX thread, updating every view in one pulse.
+   *
+   * @param directory the directory holding the sprite files
+   */
+  public static void reload(Path directory) {
+    SpriteAtlas packed = new SpriteAtlas(directory);
+    Platform.runLater(
+        () -> {
+          SpriteAtlas atlas = get();
+          atlas.viewports = packed.viewports;
+          atlas.houseFrames = packed.houseFrames;
+          atlas.image.set(packed.image.get());
+        });
+  }
+
+  /**
+   * Gets the texture holding every sprite.
+   *
+   * @return the atlas image
+   */
+  public Image getImage() {
+    return image.get();
+  }
+
+  /**
+   * Gets the texture as an observable property, set again after each reload once the viewports and
+   * the house frame count are up to date.
+   *
+   * @return the property of the atlas image
+   */
+  public ReadOnlyObjectProperty<Image> imageProperty() {
+    return image;
+  }
+
+  /**
+   * Gets the precomputed viewport of a frame.
+   *
+   * @param frame the frame index, one of the constants of this class plus an offset
+   * @return the viewport of the frame in the atlas image
+   */
+  public Rectangle2D getViewport(int frame) {
+    return viewports[frame];
+  }
+
+  /**
+   * Gets the number of frames of the house animation.
+   *
+   * @return the number of house frames
+   */
+  public int getHouseFrames() {
+    return houseFrames;
+  }
+
+  /**
+   * Creates an ImageView on the atlas showing a frame.
+   *
+   * @param frame the frame index
+   * @return an ImageView sharing the atlas image
+   */
+  public ImageView createView(int frame) {
+    ImageView view = new ImageView();
+    view.imageProperty().bind(image);
+    view.setViewport(viewports[frame]);
+    return view;
+  }
+
+  private void copy(
+      PixelWriter writer, Image source, int sourceX, int sourceY, int size, int frame) {
+    writer.setPixels(
+        cellX(frame), cellY(frame), size, size, source.getPixelReader(), sourceX, sourceY);
+    viewports[frame] = new Rectangle2D(cellX(frame), cellY(frame), size, size);
+  }
+
+  private Image loadImage(String name) {
+    Image image =
+        directory == null
+            ? new Image("sprites/" + name)
+            : new Image(directory.resolve(name).toUri().toString());
+    // A broken file gives an error image without pixels instead of throwing
+    if (image.isError()) {
+      throw new UncheckedIOException("Cannot read " + name, new IOException(image.getException()));
+    }
+    return image;
+  }
+
+  private InputStream openStream(String name) throws IOException {
+    return directory == null
+        ? SpriteAtlas.class.getResourceAsStream("/sprites/" + name)
+        : Files.newInputStream(directory.resolve(name));
+  }
+
+  private static int cellX(int frame) {
+    return frame % COLUMNS * CELL;
+  }
+
+  private static int cellY(int frame) {
+    return frame / COLUMNS * CELL;
+  }
+
+  /**
+   * Decodes every frame of an animated GIF, compositing each frame over the previous ones since GIF
+   * frames only hold the pixels that changed. Frames are never disposed, as in house.gif.
+   *
+   * @param name the file name of the GIF sprite
+   * @return the full canvas of each frame
+   */
+  private BufferedImage[] readGifFrames(String name) {
+    try (InputStream input = openStream(name);
+        ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+      ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+      reader.setInput(stream);
+      int count = reader.getNumImages(true);
+      if (count == 0) {
+        throw new IOException(name + " has no frame");
+      }
+      BufferedImage[] frames = new BufferedImage[count];
+      BufferedImage canvas = new BufferedImage(CELL, CELL, BufferedImage.TYPE_INT_ARGB);
+
+      for (int i = 0; i < count; ++i) {
+        IIOMetadataNode metadata =
+            (IIOMetadataNode) reader.getImageMetadata(i).getAsTree("javax_imageio_gif_image_1.0");
+        Element descriptor = (Element) metadata.getElementsByTagName("ImageDescriptor").item(0);
+        int left = Integer.parseInt(descriptor.getAttribute("imageLeftPosition"));
+        int top = Integer.parseInt(descriptor.getAttribute("imageTopPosition"));
+        canvas.getGraphics().drawImage(reader.read(i), left, top, null);
+
+        BufferedImage frame = new BufferedImage(CELL, CELL, BufferedImage.TYPE_INT_ARGB);
+        frame.getGraphics().drawImage(canvas, 0, 0, null);
+        frames[i] = frame;
+      }
+      reader.dispose();
+      return frames;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read " + name, e);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package rpg.ui;
+
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+
+/**
+ * The layers of the game grid: a base, an item and an actor layer per tile. Every tile gets one
+ * ImageView per layer when the grid is built, and later changes only re-point or toggle these
+ * views, so that a move mutates two nodes and allocates nothing.
+ */
+public class TileLayers {
+  private final SpriteAtlas atlas;
+  private final int size;
+  private final ImageView[] base;
+  private final ImageView[] items;
+  private final ImageView[] actors;
+  private int actorIndex = -1;
+
+  /**
+   * Constructs the layers and adds their views to every tile, showing grass with no item or actor.
+   *
+   * @param sprites the grid of tile panes
+   * @param atlas the atlas the views display
+   */
+  public TileLayers(StackPane[][] sprites, SpriteAtlas atlas) {
+    this.atlas = atlas;
+    this.size = sprites.length;
+    this.base = new ImageView[size * size];
+    this.items = new ImageView[size * size];
+    this.actors = new ImageView[size * size];
+
+    for (int x = 0; x < size; ++x) {
+      for (int y = 0; y < size; ++y) {
+        int index = x * size + y;
+        base[index] = atlas.createView(SpriteAtlas.GRASS);
+        items[index] = atlas.createView(SpriteAtlas.GRASS);
+        items[index].setVisible(false);
+        actors[index] = atlas.createView(SpriteAtlas.PLAYER);
+        actors[index].setVisible(false);
+        // The order of the children is the drawing order of the layers
+        sprites[x][y].getChildren().setAll(base[index], items[index], actors[index]);
+      }
+    }
+  }
+
+  /**
+   * Gets the base view of a tile, the grass or the house.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @return the view of the base layer
+   */
+  public ImageView getBase(int x, int y) {
+    return base[x * size + y];
+  }
+
+  /**
+   * Shows a frame in the base layer of a tile.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @param frame the atlas frame
+   */
+  public void setBase(int x, int y, int frame) {
+    base[x * size + y].setViewport(atlas.getViewport(frame));
+  }
+
+  /**
+   * Shows an item on a tile, or hides it.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @param frame the atlas frame of the item, or -1 for no item
+   */
+  public void setItem(int x, int y, int frame) {
+    ImageView item = items[x * size + y];
+    if (frame < 0) {
+      item.setVisible(false);
+    } else {
+      item.setViewport(atlas.getViewport(frame));
+      item.setVisible(true);
+    }
+  }
+
+  /**
+   * Checks if an item is shown on a tile.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @return true if the item layer of the tile is visible, false otherwise
+   */
+  public boolean hasItem(int x, int y) {
+    return items[x * size + y].isVisible();
+  }
+
+  /**
+   * Moves the actor to a tile, hiding it on its previous tile.
+   *
+   * @param x the x-coordinate of the tile
+   * @param y the y-coordinate of the tile
+   * @param frame the atlas frame the actor currently shows
+   * @return the view of the actor layer now showing the actor
+   */
+  public ImageView moveActor(int x, int y, int frame) {
+    int index = x * size + y;
+    if (index != actorIndex) {
+      if (actorIndex >= 0) {
+        actors[actorIndex].setVisible(false);
+      }
+      actors[index].setViewport(atlas.getViewport(frame));
+      actors[index].setVisible(true);
+      actorIndex = index;
+    }
+    return actors[index];
+  }
+}
@@ -0,0 +1,148 @@
+package rpg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Checks the word-parallel layer operations against per-cell loops on generated maps. */
+class BitboardTest {
+  private static final int MAPS = 300;
+  // Sizes below, at and across the 64-bit word boundaries
+  private static final int[] SIZES = {7, 20, 63, 64, 65, 130};
+
+  private static RPGMap map(int seed) {
+    return RPGMap.generate(SIZES[seed % SIZES.length], seed);
+  }
+
+  @Test
+  void layersMatchTheTiles() {
+    for (int seed = 0; seed < MAPS; ++seed) {
+      RPGMap map = map(seed);
+      Bitboard passable = map.getObstacles().complement();
+      for (int x = 0; x < map.getSize(); ++x) {
+        for (int y = 0; y < map.getSize(); ++y) {
+          byte tile = map.getTile(x, y);
+          boolean obstacle = tile == RPGMap.ROCK || tile == RPGMap.PANEL;
+          assertEquals(obstacle, map.getObstacles().get(x, y), "obstacle, map " + seed);
+          assertEquals(tile == RPGMap.DRUG, map.getDrugs().get(x, y), "drug, map " + seed);
+          assertEquals(!obstacle, passable.get(x, y), "passable, map " + seed);
+        }
+      }
+    }
+  }
+
+  @Test
+  void floodFillMatchesBreadthFirstSearch() {
+    Random random = new Random(0);
+    for (int seed = 0; seed < MAPS; ++seed) {
+      RPGMap map = map(seed);
+      int size = map.getSize();
+      int startX = random.nextInt(size);
+      int startY = random.nextInt(size);
+      Bitboard reached = map.reachable(startX, startY);
+
+      // Walk the passable tiles one cell at a time, the start tile reached even on an obstacle
+      boolean[] expected = new boolean[size * size];
+      ArrayDeque<int[]> queue = new ArrayDeque<>();
+      expected[startX * size + startY] = true;
+      queue.add(new int[] {startX, startY});
+      int[][] moves = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+      while (!queue.isEmpty()) {
+        int[] tile = queue.poll();
+        for (int[] move : moves) {
+          int x = tile[0] + move[0];
+          int y = tile[1] + move[1];
+          if (map.inBounds(x, y) && !map.isObstacle(x, y) && !expected[x * size + y]) {
+            expected[x * size + y] = true;
+            queue.add(new int[] {x, y});
+          }
+        }
+      }
+      for (int x = 0; x < size; ++x) {
+        for (int y = 0; y < size; ++y) {
+          assertEquals(expected[x * size + y], reached.get(x, y), "tile reached, map " + seed);
+        }
+      }
+    }
+  }
+
+  @Test
+  void countRegionMatchesCellCounts() {
+    Random random = new Random(0);
+    for (int seed = 0; seed < MAPS; ++seed) {
+      RPGMap map = map(seed);
+      int size = map.getSize();
+      Bitboard obstacles = map.getObstacles();
+      Bitboard mask = map.reachable(random.nextInt(size), random.nextInt(size));
+      for (int region = 0; region < 20; ++region) {
+        int x0 = random.nextInt(size);
+        int y0 = random.nextInt(size);
+        int x1 = x0 + random.nextInt(size - x0 + 1);
+        int y1 = y0 + random.nextInt(size - y0 + 1);
+        int all = 0;
+        int masked = 0;
+        for (int x = x0; x < x1; ++x) {
+          for (int y = y0; y < y1; ++y) {
+            all += obstacles.get(x, y) ? 1 : 0;
+            masked += obstacles.get(x, y) && mask.get(x, y) ? 1 : 0;
+          }
+        }
+        assertEquals(all, obstacles.countRegion(x0, y0, x1, y1), "count, map " + seed);
+        assertEquals(masked, obstacles.countRegion(x0, y0, x1, y1, mask), "masked, map " + seed);
+      }
+    }
+  }
+
+  @Test
+  void densitiesMatchCellCounts() {
+    for (int seed = 0; seed < MAPS; ++seed) {
+      RPGMap map = map(seed);
+      int size = map.getSize();
+      int blockSize = 1 + seed % 9;
+      int blocks = (size + blockSize - 1) / blockSize;
+      int[] expected = new int[blocks * blocks];
+      for (int x = 0; x < size; ++x) {
+        for (int y = 0; y < size; ++y) {
+          if (map.isDrug(x, y)) {
+            ++expected[x / blockSize * blocks + y / blockSize];
+          }
+        }
+      }
+      assertArrayEquals(expected, map.getDrugs().densities(blockSize), "map " + seed);
+    }
+  }
+
+  @Test
+  void dilateMatchesNeighbourCells() {
+    for (int seed = 0; seed < MAPS; ++seed) {
+      RPGMap map = map(seed);
+      int size = map.getSize();
+      Bitboard obstacles = map.getObstacles();
+      Bitboard dilated = new Bitboard(size);
+      obstacles.dilate(dilated);
+      int expectedCount = 0;
+      for (int x = 0; x < size; ++x) {
+        for (int y = 0; y < size; ++y) {
+          boolean expected =
+              obstacles.get(x, y)
+                  || (x > 0 && obstacles.get(x - 1, y))
+                  || (x < size - 1 && obstacles.get(x + 1, y))
+                  || (y > 0 && obstacles.get(x, y - 1))
+                  || (y < size - 1 && obstacles.get(x, y + 1));
+          assertEquals(expected, dilated.get(x, y), "neighbourhood, map " + seed);
+          expectedCount += expected ? 1 : 0;
+        }
+      }
+      assertEquals(expectedCount, dilated.count(), "count, map " + seed);
+
+      // Dilating in place gives the same layer
+      Bitboard copy = new Bitboard(size);
+      copy.copyFrom(obstacles);
+      copy.dilate(copy);
+      assertEquals(expectedCount, copy.countRegion(0, 0, size, size), "in place, map " + seed);
+    }
+  }
+}
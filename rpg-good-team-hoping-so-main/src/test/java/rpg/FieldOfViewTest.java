@@ -0,0 +1,92 @@
+package rpg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class FieldOfViewTest {
+  private static final int MAPS = 200;
+  private static final int[] SIZES = {7, 20, 65};
+
+  @Test
+  void updatesMatchAViewCastFromScratch() {
+    Random random = new Random(0);
+    for (int seed = 0; seed < MAPS; ++seed) {
+      RPGMap map = RPGMap.generate(SIZES[seed % SIZES.length], seed);
+      int size = map.getSize();
+      int radius = 1 + seed % 8;
+      FieldOfView view = new FieldOfView(map, radius);
+      BitSet seen = new BitSet();
+      BitSet explored = new BitSet();
+      int x = random.nextInt(size);
+      int y = random.nextInt(size);
+      for (int step = 0; step < 60; ++step) {
+        // Mostly single steps, sometimes a jump across the map
+        if (random.nextInt(10) == 0) {
+          x = random.nextInt(size);
+          y = random.nextInt(size);
+        } else {
+          x = Math.max(0, Math.min(size - 1, x + random.nextInt(3) - 1));
+          y = Math.max(0, Math.min(size - 1, y + random.nextInt(3) - 1));
+        }
+        view.moveTo(x, y);
+        view.update();
+        FieldOfView fresh = new FieldOfView(map, radius);
+        fresh.moveTo(x, y);
+        fresh.update();
+
+        BitSet changed = new BitSet();
+        for (int i = 0; i < view.changedCount(); ++i) {
+          changed.set(view.changedTile(i));
+        }
+        for (int tileX = 0; tileX < size; ++tileX) {
+          for (int tileY = 0; tileY < size; ++tileY) {
+            int tile = tileX * size + tileY;
+            boolean visible = fresh.isVisible(tileX, tileY);
+            assertEquals(visible, view.isVisible(tileX, tileY), "visible, map " + seed);
+            assertEquals(visible != seen.get(tile), changed.get(tile), "changed, map " + seed);
+            seen.set(tile, visible);
+            explored.set(tile, explored.get(tile) || visible);
+            assertEquals(explored.get(tile), view.isExplored(tileX, tileY), "map " + seed);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void openMapShowsTheWholeRadius() {
+    RPGMap map = new RPGMap(21, 0);
+    FieldOfView view = new FieldOfView(map, 5);
+    view.moveTo(10, 10);
+    view.update();
+    for (int x = 0; x < 21; ++x) {
+      for (int y = 0; y < 21; ++y) {
+        int dx = x - 10;
+        int dy = y - 10;
+        assertEquals(dx * dx + dy * dy <= 25, view.isVisible(x, y), x + "," + y);
+      }
+    }
+  }
+
+  @Test
+  void wallHidesTheTilesBehindIt() {
+    RPGMap map = new RPGMap(11, 0);
+    for (int y = 0; y < 11; ++y) {
+      map.setTile(6, y, RPGMap.ROCK);
+    }
+    FieldOfView view = new FieldOfView(map, 10);
+    view.moveTo(3, 5);
+    view.update();
+    for (int y = 0; y < 11; ++y) {
+      assertTrue(view.isVisible(6, y), "wall " + y);
+      for (int x = 7; x < 11; ++x) {
+        assertFalse(view.isVisible(x, y), "behind the wall " + x + "," + y);
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package rpg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javafx.scene.input.KeyCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RPGHistoryTest {
+  private final RPGModel model = new RPGModel(RPGModel.SIZE, 8, 0, 1, 1);
+  private final RPGHistory history = model.getHistory();
+
+  @BeforeEach
+  void placePlayer() {
+    // A controller without a view, the model asks it about obstacles and the house
+    model.setController(
+        new RPGController(model, null) {
+          @Override
+          public boolean hasObstacleAt(int x, int y) {
+            return model.getMap().isObstacle(x, y);
+          }
+
+          @Override
+          public boolean gameWon(int x, int y) {
+            return false;
+          }
+
+          @Override
+          public void tileRestored(int x, int y) {}
+        });
+    for (int x = 5; x < 8; ++x) {
+      model.getMap().setTile(x, 0, RPGMap.GRASS);
+    }
+    model.resetPosition();
+    // The start marker startTimer adds
+    history.markTick();
+  }
+
+  @Test
+  void rewindBeforeAnyChangeIsNotConsumed() {
+    assertFalse(history.canRewind());
+    model.actPlayer(KeyCode.R);
+
+    model.actPlayer(KeyCode.UP);
+    history.markTick();
+    model.actPlayer(KeyCode.R);
+    assertEquals(8, model.getX());
+
+    // Used once the rewind went back
+    model.actPlayer(KeyCode.UP);
+    model.actPlayer(KeyCode.R);
+    assertEquals(7, model.getX());
+  }
+
+  @Test
+  void rewindRestoresPositionVisitedTilesAndDrugs() {
+    model.getMap().setTile(7, 0, RPGMap.DRUG);
+    model.actPlayer(KeyCode.UP);
+    model.clearTile(7, 0);
+    history.markTick();
+    model.actPlayer(KeyCode.UP);
+
+    // Back to the start of the game
+    model.rewind(1);
+    assertEquals(8, model.getX());
+    assertEquals(0, model.getY());
+    assertFalse(model.getVisited().get(7, 0));
+    assertFalse(model.getVisited().get(6, 0));
+    assertTrue(model.getMap().isDrug(7, 0));
+  }
+
+  @Test
+  void rewindKeepsTheStartOfTheCurrentTick() {
+    model.actPlayer(KeyCode.UP);
+    history.markTick();
+    model.actPlayer(KeyCode.UP);
+
+    model.rewind(0);
+    assertEquals(7, model.getX());
+    assertTrue(model.getVisited().get(7, 0));
+    assertFalse(model.getVisited().get(6, 0));
+    assertEquals(2, history.rewindableTicks());
+  }
+
+  @Test
+  void rewindForgetsBumps() {
+    model.getMap().setTile(7, 0, RPGMap.ROCK);
+    model.actPlayer(KeyCode.UP);
+    history.markTick();
+    model.actPlayer(KeyCode.UP);
+    assertEquals(2, model.getBumps().length);
+
+    model.rewind(0);
+    assertEquals(1, model.getBumps().length);
+    model.rewind(1);
+    assertArrayEquals(new int[0], model.getBumps());
+  }
+
+  @Test
+  void clearTileOnlyTakesDrugs() {
+    model.getMap().setTile(7, 0, RPGMap.HOUSE);
+    model.getMap().setTile(6, 0, RPGMap.ROCK);
+    model.clearTile(7, 0);
+    model.clearTile(6, 0);
+    assertTrue(model.getMap().isHouse(7, 0));
+    assertTrue(model.getMap().isObstacle(6, 0));
+    assertFalse(history.canRewind());
+  }
+
+  @Test
+  void fullBufferForgetsTheOldestTicks() {
+    RPGHistory small = new RPGHistory(model, 4, 2);
+    for (int tick = 0; tick < 6; ++tick) {
+      small.markTick();
+    }
+    assertEquals(4, small.rewindableTicks());
+    assertEquals(4, small.rewind(10));
+  }
+}
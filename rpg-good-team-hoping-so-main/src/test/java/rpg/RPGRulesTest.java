@@ -0,0 +1,41 @@
+package rpg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RPGRulesTest {
+  @Test
+  void onlyRocksAndPanelsBlock() {
+    assertTrue(RPGRules.isObstacle(RPGMap.ROCK));
+    assertTrue(RPGRules.isObstacle(RPGMap.PANEL));
+    assertFalse(RPGRules.isObstacle(RPGMap.GRASS));
+    assertFalse(RPGRules.isObstacle(RPGMap.DRUG));
+    assertFalse(RPGRules.isObstacle(RPGMap.HOUSE));
+  }
+
+  @Test
+  void timerUnitsScaleThePenaltiesAndBonuses() {
+    assertEquals(10 - RPGModel.BUMP_PENALTY, RPGRules.bump(10, 1));
+    assertEquals(40 - 4 * RPGModel.BUMP_PENALTY, RPGRules.bump(40, 4));
+    assertEquals(10 + RPGModel.DRUG_BONUS, RPGRules.takeDrug(10, 1, RPGRules.UNCAPPED));
+    assertEquals(40 + 4 * RPGModel.DRUG_BONUS, RPGRules.takeDrug(40, 4, RPGRules.UNCAPPED));
+  }
+
+  @Test
+  void cappedBonusesAreLostAboveTheCap() {
+    assertEquals(60, RPGRules.takeDrug(59, 1, 60));
+    assertEquals(60, RPGRules.fart(59, 1, 60, 0.0));
+  }
+
+  @Test
+  void fartRollDecidesBetweenBonusAndGameOver() {
+    int success = RPGRules.fart(10, 1, RPGRules.UNCAPPED, RPGModel.FART_SUCCESS_CHANCE - 0.01);
+    assertEquals(10 + RPGModel.FART_BONUS, success);
+    int failure = RPGRules.fart(10, 1, RPGRules.UNCAPPED, RPGModel.FART_SUCCESS_CHANCE);
+    assertTrue(RPGRules.isTimeUp(failure));
+    assertFalse(RPGRules.isTimeUp(1));
+  }
+}
@@ -0,0 +1,78 @@
+package rpg.endless;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import org.junit.jupiter.api.Test;
+import rpg.RPGMap;
+
+class ChunkGeneratorTest {
+  private static final int WORLDS = 20;
+  // The chunks from -RADIUS to RADIUS - 1 on both axes
+  private static final int RADIUS = 3;
+
+  @Test
+  void chunksDependOnlyOnTheirSeed() {
+    Chunk first = ChunkGenerator.generate(42, -2, 5);
+    // Generating other chunks in between changes nothing
+    ChunkGenerator.generate(42, 7, 7);
+    Chunk second = ChunkGenerator.generate(42, -2, 5);
+    for (int x = 0; x < Chunk.SIZE; ++x) {
+      for (int y = 0; y < Chunk.SIZE; ++y) {
+        assertEquals(first.getTile(x, y), second.getTile(x, y));
+      }
+    }
+  }
+
+  @Test
+  void everyChunkCenterIsReachable() {
+    int chunks = 2 * RADIUS;
+    int size = chunks * Chunk.SIZE;
+    for (long seed = 0; seed < WORLDS; ++seed) {
+      // Stitch the chunks into one grid of walkable tiles
+      boolean[] walkable = new boolean[size * size];
+      for (int chunkX = -RADIUS; chunkX < RADIUS; ++chunkX) {
+        for (int chunkY = -RADIUS; chunkY < RADIUS; ++chunkY) {
+          Chunk chunk = ChunkGenerator.generate(seed, chunkX, chunkY);
+          for (int x = 0; x < Chunk.SIZE; ++x) {
+            for (int y = 0; y < Chunk.SIZE; ++y) {
+              byte tile = chunk.getTile(x, y);
+              int worldX = (chunkX + RADIUS) * Chunk.SIZE + x;
+              int worldY = (chunkY + RADIUS) * Chunk.SIZE + y;
+              walkable[worldX * size + worldY] = tile != RPGMap.ROCK && tile != RPGMap.PANEL;
+            }
+          }
+        }
+      }
+
+      // Walk from the center of one chunk, inside the stitched chunks only
+      int center = Chunk.SIZE / 2;
+      boolean[] reached = new boolean[size * size];
+      ArrayDeque<Integer> queue = new ArrayDeque<>();
+      reached[center * size + center] = true;
+      queue.add(center * size + center);
+      while (!queue.isEmpty()) {
+        int tile = queue.poll();
+        int x = tile / size;
+        int y = tile % size;
+        int[][] moves = {{x + 1, y}, {x - 1, y}, {x, y + 1}, {x, y - 1}};
+        for (int[] move : moves) {
+          int next = move[0] * size + move[1];
+          boolean inside = move[0] >= 0 && move[0] < size && move[1] >= 0 && move[1] < size;
+          if (inside && walkable[next] && !reached[next]) {
+            reached[next] = true;
+            queue.add(next);
+          }
+        }
+      }
+      for (int chunkX = 0; chunkX < chunks; ++chunkX) {
+        for (int chunkY = 0; chunkY < chunks; ++chunkY) {
+          int x = chunkX * Chunk.SIZE + center;
+          int y = chunkY * Chunk.SIZE + center;
+          assertTrue(reached[x * size + y], "chunk " + chunkX + "," + chunkY + ", world " + seed);
+        }
+      }
+    }
+  }
+}
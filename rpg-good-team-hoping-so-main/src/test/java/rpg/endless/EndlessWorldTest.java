@@ -0,0 +1,48 @@
+package rpg.endless;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import rpg.RPGMap;
+
+class EndlessWorldTest {
+  private static final long TIMEOUT_MILLIS = 10_000;
+
+  @Test
+  void changedTilesSurviveEviction() throws InterruptedException {
+    // The smallest budget, 32 chunks
+    EndlessWorld world = new EndlessWorld(7, 0, 2);
+    try {
+      load(world, 0, 0);
+      byte generated = world.getTile(5, 6);
+      byte changed = generated == RPGMap.ROCK ? RPGMap.GRASS : RPGMap.ROCK;
+      world.setTile(5, 6, changed);
+      world.setTile(7, 8, RPGMap.DRUG);
+      world.setTile(7, 8, RPGMap.GRASS);
+
+      // Run far away, reading a tile would keep its chunk live
+      for (int step = 1; step <= 10; ++step) {
+        load(world, step * 3 * Chunk.SIZE, 0);
+      }
+      assertEquals(EndlessWorld.UNLOADED, world.getTile(5, 6), "The chunk was not evicted");
+
+      load(world, 0, 0);
+      assertEquals(changed, world.getTile(5, 6));
+      assertEquals(RPGMap.GRASS, world.getTile(7, 8));
+    } finally {
+      world.close();
+    }
+  }
+
+  /** Moves the player to a tile and publishes the generated chunks until its chunk is live. */
+  private static void load(EndlessWorld world, int x, int y) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    world.update(x, y, 0, 0);
+    while (world.getTile(x, y) == EndlessWorld.UNLOADED) {
+      assertTrue(System.currentTimeMillis() < deadline, "The chunk was never generated");
+      Thread.sleep(1);
+      world.publish();
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package rpg.perf;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/** The duration samples of one metric, in nanoseconds, summarized as percentiles. */
+public class PerfSamples {
+  private final String name;
+  private long[] samples = new long[1024];
+  private int size;
+
+  /**
+   * Constructs an empty set of samples.
+   *
+   * @param name the name of the metric in the reports
+   */
+  public PerfSamples(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Gets the name of the metric.
+   *
+   * @return the metric name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the number of samples.
+   *
+   * @return the number of samples
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Adds a sample.
+   *
+   * @param nanos the measured duration in nanoseconds
+   */
+  public void add(long nanos) {
+    if (size == samples.length) {
+      samples = Arrays.copyOf(samples, size << 1);
+    }
+    samples[size++] = nanos;
+  }
+
+  /**
+   * Gets a percentile of the samples, by the nearest-rank method.
+   *
+   * @param percent the percentile, from 0 to 100
+   * @return the percentile in microseconds, 0 without samples
+   */
+  public double percentileMicros(double percent) {
+    if (size == 0) {
+      return 0.0;
+    }
+    long[] sorted = Arrays.copyOf(samples, size);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percent / 100.0 * size);
+    return sorted[Math.max(0, Math.min(size - 1, rank - 1))] / 1000.0;
+  }
+
+  /**
+   * Formats the summary of the samples as a JSON object.
+   *
+   * @return the count, the 50th, 90th and 99th percentiles and the maximum in microseconds
+   */
+  public String toJson() {
+    return String.format(
+        Locale.ROOT,
+        "{\"count\": %d, \"p50\": %.1f, \"p90\": %.1f, \"p99\": %.1f, \"max\": %.1f}",
+        size,
+        percentileMicros(50),
+        percentileMicros(90),
+        percentileMicros(99),
+        percentileMicros(100));
+  }
+}
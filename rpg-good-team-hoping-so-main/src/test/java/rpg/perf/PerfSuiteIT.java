@@ -0,0 +1,289 @@
+package rpg.perf;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.ButtonBase;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.stage.Window;
+import org.junit.jupiter.api.Test;
+import rpg.RPG;
+
+/**
+ * The frame-time and input-latency regression suite, run by failsafe in the integration-test phase
+ * on the headless Monocle platform. Launches the game through {@link RPG}, then plays scripted
+ * games through the menu buttons and the key handler of the game scene, measuring the time from
+ * each key event to the end of the layout of the next pulse, and the frame times while playing,
+ * going back to the menu and restarting.
+ *
+ * <p>Fails when the p99 of a metric rises more than 10% above perf-baseline.properties. Run with
+ * -Dperf.updateBaseline=true to store the current p99s in the baseline instead.
+ */
+class PerfSuiteIT extends AnimationTimer {
+  private static final String BASELINE = "src/test/resources/perf-baseline.properties";
+  private static final String REPORT = "target/perf-report.json";
+  private static final KeyCode[] KEYS = {KeyCode.UP, KeyCode.DOWN, KeyCode.LEFT, KeyCode.RIGHT};
+  private static final int ROUNDS = 20;
+  private static final int KEYS_PER_ROUND = 40;
+  private static final long KEY_INTERVAL_MILLIS = 40;
+  private static final long TRANSITION_MILLIS = 500;
+  private static final long TIMEOUT_MILLIS = 10_000;
+  private static final double TOLERANCE = 0.10;
+
+  private final PerfSamples latency = new PerfSamples("input-latency");
+  private final PerfSamples gameplay = new PerfSamples("frame-gameplay");
+  private final PerfSamples menu = new PerfSamples("frame-menu");
+  private final PerfSamples restart = new PerfSamples("frame-restart");
+  private final List<Scene> listenedScenes = new ArrayList<>();
+  private volatile PerfSamples phase;
+  private long lastPulse;
+  private long keyTime;
+
+  @Test
+  void p99StaysUnderBaseline() throws Exception {
+    // The application thread runs until Platform.exit, the career of the suite stays in target
+    Thread launcher =
+        new Thread(() -> Application.launch(RPG.class, "--stats=target/perf-career.stats"));
+    launcher.setDaemon(true);
+    launcher.start();
+    assertNotNull(await(() -> find(".start-button")), "The menu was not displayed");
+    onFxThread(
+        () -> {
+          // The game closes the menu window before opening the next one
+          Platform.setImplicitExit(false);
+          start();
+        });
+
+    try {
+      play();
+    } finally {
+      onFxThread(this::stop);
+      Platform.exit();
+    }
+    writeReport(Paths.get(REPORT));
+
+    if (Boolean.getBoolean("perf.updateBaseline")) {
+      writeBaseline(Paths.get(BASELINE));
+      System.out.println("Baseline written to " + BASELINE);
+      return;
+    }
+    List<String> regressions = compare();
+    assertTrue(regressions.isEmpty(), String.join("\n", regressions));
+  }
+
+  /** Plays the scripted rounds: a start from the menu, key presses, then back to the menu. */
+  private void play() throws InterruptedException {
+    SplittableRandom random = new SplittableRandom(0);
+    for (int round = 0; round < ROUNDS; ++round) {
+      phase = restart;
+      ButtonBase start = (ButtonBase) await(() -> find(".start-button"));
+      assertNotNull(start, "The menu was not displayed");
+      onFxThread(start::fire);
+      assertNotNull(await(PerfSuiteIT::findGameScene), "The game was not displayed");
+      Thread.sleep(TRANSITION_MILLIS);
+
+      phase = gameplay;
+      for (int key = 0; key < KEYS_PER_ROUND; ++key) {
+        KeyCode code = KEYS[random.nextInt(KEYS.length)];
+        boolean[] playing = new boolean[1];
+        onFxThread(() -> playing[0] = sendKey(code));
+        if (!playing[0]) {
+          // The game ended on its own, by winning or running out of time
+          break;
+        }
+        Thread.sleep(KEY_INTERVAL_MILLIS);
+      }
+
+      phase = menu;
+      ButtonBase back = (ButtonBase) callOnFxThread(() -> find(".button-backtomenu"));
+      if (back != null) {
+        onFxThread(back::fire);
+      }
+      Thread.sleep(TRANSITION_MILLIS);
+    }
+  }
+
+  /**
+   * Sends a key release through the handler the game scene installed, and arms the latency
+   * measurement of the next pulse.
+   *
+   * @return false if no game is displayed
+   */
+  private boolean sendKey(KeyCode code) {
+    Scene scene = findGameScene();
+    if (scene == null) {
+      return false;
+    }
+    if (!listenedScenes.contains(scene)) {
+      listenedScenes.add(scene);
+      scene.addPostLayoutPulseListener(this::pulseLaidOut);
+    }
+    keyTime = System.nanoTime();
+    scene
+        .getOnKeyReleased()
+        .handle(new KeyEvent(KeyEvent.KEY_RELEASED, "", "", code, false, false, false, false));
+    return true;
+  }
+
+  private void pulseLaidOut() {
+    if (keyTime != 0) {
+      latency.add(System.nanoTime() - keyTime);
+      keyTime = 0;
+    }
+  }
+
+  @Override
+  public void handle(long now) {
+    if (lastPulse != 0 && phase != null) {
+      phase.add(now - lastPulse);
+    }
+    lastPulse = now;
+  }
+
+  /** Finds the scene of a shown window whose key handler plays the game. */
+  private static Scene findGameScene() {
+    for (Window window : Window.getWindows()) {
+      Scene scene = window.getScene();
+      if (window.isShowing() && scene != null && scene.getOnKeyReleased() != null) {
+        return scene;
+      }
+    }
+    return null;
+  }
+
+  /** Finds a node of a shown window by its CSS selector. */
+  private static Node find(String selector) {
+    for (Window window : Window.getWindows()) {
+      Scene scene = window.getScene();
+      Node node = window.isShowing() && scene != null ? scene.lookup(selector) : null;
+      if (node != null) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  /** Polls the JavaFX thread until a lookup finds something, null after the timeout. */
+  private static <T> T await(Supplier<T> lookup) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (System.currentTimeMillis() < deadline) {
+      try {
+        T found = callOnFxThread(lookup);
+        if (found != null) {
+          return found;
+        }
+      } catch (IllegalStateException e) {
+        // The toolkit is not started yet
+      }
+      Thread.sleep(50);
+    }
+    return null;
+  }
+
+  private static void onFxThread(Runnable action) throws InterruptedException {
+    callOnFxThread(
+        () -> {
+          action.run();
+          return null;
+        });
+  }
+
+  private static <T> T callOnFxThread(Supplier<T> action) throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(1);
+    List<T> result = new ArrayList<>(1);
+    Platform.runLater(
+        () -> {
+          try {
+            result.add(action.get());
+          } finally {
+            done.countDown();
+          }
+        });
+    done.await();
+    return result.isEmpty() ? null : result.get(0);
+  }
+
+  private PerfSamples[] metrics() {
+    return new PerfSamples[] {latency, gameplay, menu, restart};
+  }
+
+  private void writeReport(Path report) throws IOException {
+    StringBuilder json = new StringBuilder("{\n");
+    PerfSamples[] metrics = metrics();
+    for (int i = 0; i < metrics.length; ++i) {
+      json.append("  \"")
+          .append(metrics[i].getName())
+          .append("\": ")
+          .append(metrics[i].toJson())
+          .append(i < metrics.length - 1 ? ",\n" : "\n");
+    }
+    json.append("}\n");
+    Files.createDirectories(report.getParent());
+    Files.writeString(report, json);
+    System.out.print(json);
+  }
+
+  private void writeBaseline(Path baseline) throws IOException {
+    Properties properties = new Properties();
+    for (PerfSamples metric : metrics()) {
+      properties.setProperty(
+          metric.getName() + ".p99",
+          String.format(Locale.ROOT, "%.1f", metric.percentileMicros(99)));
+    }
+    try (OutputStream out = Files.newOutputStream(baseline)) {
+      properties.store(out, "p99 baselines in microseconds");
+    }
+  }
+
+  /**
+   * Checks every metric against its baseline p99, with some tolerance for noise.
+   *
+   * @return a message per metric above its baseline, or without baseline
+   */
+  private List<String> compare() throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = PerfSuiteIT.class.getResourceAsStream("/perf-baseline.properties")) {
+      assertNotNull(in, "No baseline, run with -Dperf.updateBaseline=true to store one");
+      properties.load(in);
+    }
+    List<String> regressions = new ArrayList<>();
+    for (PerfSamples metric : metrics()) {
+      String stored = properties.getProperty(metric.getName() + ".p99");
+      if (stored == null) {
+        regressions.add(metric.getName() + ": no baseline");
+        continue;
+      }
+      double limit = Double.parseDouble(stored) * (1 + TOLERANCE);
+      double p99 = metric.percentileMicros(99);
+      if (p99 > limit) {
+        regressions.add(
+            String.format(
+                Locale.ROOT,
+                "%s: p99 %.1f us above baseline %s us",
+                metric.getName(),
+                p99,
+                stored));
+      }
+    }
+    return regressions;
+  }
+}
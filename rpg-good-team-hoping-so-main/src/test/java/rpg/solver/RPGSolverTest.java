@@ -0,0 +1,94 @@
+package rpg.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import rpg.RPGMap;
+import rpg.RPGModel;
+
+class RPGSolverTest {
+  // The house of a generated map, 13 moves from the start tile
+  private static final int HOUSE_X = 0;
+  private static final int HOUSE_Y = 5;
+
+  private static RPGMap emptyMap() {
+    RPGMap map = new RPGMap(RPGModel.SIZE, 0);
+    map.setTile(HOUSE_X, HOUSE_Y, RPGMap.HOUSE);
+    return map;
+  }
+
+  private static RPGSolver solver(RPGMap map, int timerSeconds) {
+    return new RPGSolver(map, RPGModel.START_X, RPGModel.START_Y, timerSeconds, 1, 60);
+  }
+
+  private static double rating(RPGMap map) {
+    return new RPGSolver(map, RPGModel.START_X, RPGModel.START_Y).difficulty();
+  }
+
+  @Test
+  void enoughTimeWalksToTheHouse() {
+    RPGSolver solver = solver(emptyMap(), 13);
+    assertEquals(1.0, solver.winProbability(), 1e-12);
+    assertEquals(0.0, solver.difficulty(), 1e-12);
+  }
+
+  @Test
+  void walledOffHouseIsLost() {
+    RPGMap map = emptyMap();
+    map.setTile(HOUSE_X, HOUSE_Y - 1, RPGMap.ROCK);
+    map.setTile(HOUSE_X, HOUSE_Y + 1, RPGMap.PANEL);
+    map.setTile(HOUSE_X + 1, HOUSE_Y, RPGMap.ROCK);
+    assertEquals(0.0, solver(map, 60).winProbability(), 1e-12);
+  }
+
+  @Test
+  void oneMissingSecondTakesOneFart() {
+    // 12 seconds for 13 moves, a single fart makes up for them
+    RPGSolver solver = solver(emptyMap(), 12);
+    assertEquals(RPGModel.FART_SUCCESS_CHANCE, solver.winProbability(), 1e-12);
+    assertTrue(solver.stateCount() > 0);
+  }
+
+  @Test
+  void sevenMissingSecondsTakeTwoFartsAcrossTheCooldown() {
+    // A fart nets 4 seconds, the second one waits for the cooldown while walking
+    double chance = RPGModel.FART_SUCCESS_CHANCE;
+    assertEquals(chance * chance, solver(emptyMap(), 6).winProbability(), 1e-12);
+  }
+
+  @Test
+  void drugOnThePathSavesTheFart() {
+    RPGMap map = emptyMap();
+    map.setTile(RPGModel.START_X - 1, RPGModel.START_Y, RPGMap.DRUG);
+    assertEquals(1.0, solver(map, 12).winProbability(), 1e-12);
+  }
+
+  @Test
+  void bumpsAreNeverWorthIt() {
+    // Obstacles off the shortest path change nothing
+    RPGMap map = emptyMap();
+    map.setTile(9, 9, RPGMap.ROCK);
+    map.setTile(RPGModel.START_X + 1, RPGModel.START_Y, RPGMap.PANEL);
+    assertEquals(RPGModel.FART_SUCCESS_CHANCE, solver(map, 12).winProbability(), 1e-12);
+  }
+
+  @Test
+  void shippedRatingVariesAcrossGeneratedMaps() {
+    // The first map has a short enough path, the other only makes it with a fart
+    assertEquals(0.0, rating(RPGMap.generate(RPGModel.SIZE, 0)), 1e-12);
+    double difficulty = rating(RPGMap.generate(RPGModel.SIZE, 209));
+    assertTrue(difficulty > 0.0 && difficulty < 1.0, "difficulty " + difficulty);
+  }
+
+  @Test
+  void tooManyDrugsAreRejected() {
+    RPGMap map = emptyMap();
+    for (int y = 0; y < RPGModel.SIZE; ++y) {
+      map.setTile(9, y, RPGMap.DRUG);
+      map.setTile(7, y, RPGMap.DRUG);
+    }
+    assertThrows(IllegalArgumentException.class, () -> solver(map, 12));
+  }
+}
@@ -0,0 +1,52 @@
+package rpg.stats;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CareerStatsTest {
+  @TempDir Path directory;
+
+  @Test
+  void gamesSurviveReloading() {
+    Path file = directory.resolve("career.stats");
+    CareerStats.load(file);
+    CareerStats.get().recordGame(true, 12, 1, 20, new int[0]);
+    CareerStats.get().recordGame(false, 0, 2, 20, new int[0]);
+
+    CareerStats.load(file);
+    assertEquals(2, CareerStats.get().getGames());
+    assertEquals(0.5, CareerStats.get().getWinRate(), 1e-12);
+    assertEquals(2, CareerStats.get().getDistinctMaps());
+  }
+
+  @Test
+  void bumpsAreCountedPerTileWhateverTheMapSize() {
+    CareerStats.load(directory.resolve("career.stats"));
+    // The tile (2,3) on a map of 20 then of 40 tiles
+    CareerStats.get().recordGame(false, 0, 1, 20, new int[] {2 * 20 + 3, 2 * 20 + 3});
+    CareerStats.get().recordGame(false, 0, 2, 40, new int[] {2 * 40 + 3});
+    assertEquals(3, CareerStats.get().getBumps(2, 3));
+    assertTrue(CareerStats.get().summary().contains("(2,3) x3"));
+  }
+
+  @Test
+  void unreadableFileIsMovedAsideBeforeSaving() throws IOException {
+    Path file = directory.resolve("career.stats");
+    byte[] damaged = {1, 2, 3, 4};
+    Files.write(file, damaged);
+
+    CareerStats.load(file);
+    CareerStats.get().recordGame(true, 5, 1, 20, new int[0]);
+
+    assertArrayEquals(damaged, Files.readAllBytes(directory.resolve("career.stats.unreadable")));
+    CareerStats.load(file);
+    assertEquals(1, CareerStats.get().getGames());
+  }
+}
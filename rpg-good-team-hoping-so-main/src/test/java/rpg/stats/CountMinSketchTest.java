@@ -0,0 +1,66 @@
+package rpg.stats;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+class CountMinSketchTest {
+  /** Adds the keys 0 to 999 once each, and key k of 1 to 5 another 100 * k times. */
+  private static CountMinSketch sketch() {
+    CountMinSketch sketch = new CountMinSketch();
+    for (long key = 0; key < 1_000; ++key) {
+      sketch.add(key);
+    }
+    for (long key = 1; key <= 5; ++key) {
+      for (int i = 0; i < 100 * key; ++i) {
+        sketch.add(key);
+      }
+    }
+    return sketch;
+  }
+
+  @Test
+  void estimatesNeverUndercount() {
+    CountMinSketch sketch = sketch();
+    for (long key = 0; key < 1_000; ++key) {
+      long count = 1 + (key >= 1 && key <= 5 ? 100 * key : 0);
+      assertTrue(sketch.estimate(key) >= count, "key " + key);
+    }
+  }
+
+  @Test
+  void topKeysAreTheMostFrequentFirst() {
+    assertArrayEquals(new long[] {5, 4, 3, 2, 1}, sketch().top());
+  }
+
+  @Test
+  void mergeAddsTheCounts() {
+    CountMinSketch merged = sketch();
+    merged.merge(sketch());
+    CountMinSketch single = sketch();
+    for (long key = 0; key < 1_000; ++key) {
+      assertEquals(2 * single.estimate(key), merged.estimate(key));
+    }
+    assertArrayEquals(new long[] {5, 4, 3, 2, 1}, merged.top());
+  }
+
+  @Test
+  void readGivesTheWrittenSketch() throws IOException {
+    CountMinSketch sketch = sketch();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    sketch.write(new DataOutputStream(bytes));
+    CountMinSketch read =
+        CountMinSketch.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    for (long key = 0; key < 1_000; ++key) {
+      assertEquals(sketch.estimate(key), read.estimate(key));
+    }
+    assertArrayEquals(sketch.top(), read.top());
+  }
+}
@@ -0,0 +1,57 @@
+package rpg.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+  // Three standard errors of 1024 registers
+  private static final double ERROR = 0.10;
+
+  private static HyperLogLog sketch(long from, long to) {
+    HyperLogLog sketch = new HyperLogLog();
+    for (long value = from; value < to; ++value) {
+      sketch.add(value);
+    }
+    return sketch;
+  }
+
+  @Test
+  void estimatesAreWithinTheStandardError() {
+    for (int count : new int[] {10, 100, 1_000, 100_000}) {
+      assertEquals(count, (double) sketch(0, count).estimate(), Math.max(1, count * ERROR));
+    }
+  }
+
+  @Test
+  void repeatedValuesCountOnce() {
+    HyperLogLog sketch = sketch(0, 1_000);
+    long estimate = sketch.estimate();
+    for (long value = 0; value < 1_000; ++value) {
+      sketch.add(value);
+    }
+    assertEquals(estimate, sketch.estimate());
+  }
+
+  @Test
+  void mergeCountsTheUnion() {
+    HyperLogLog merged = sketch(0, 60_000);
+    merged.merge(sketch(40_000, 100_000));
+    assertEquals(sketch(0, 100_000).estimate(), merged.estimate());
+  }
+
+  @Test
+  void readGivesTheWrittenSketch() throws IOException {
+    HyperLogLog sketch = sketch(0, 5_000);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    sketch.write(new DataOutputStream(bytes));
+    HyperLogLog read =
+        HyperLogLog.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(sketch.estimate(), read.estimate());
+  }
+}
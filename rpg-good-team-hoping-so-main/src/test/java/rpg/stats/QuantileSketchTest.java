@@ -0,0 +1,60 @@
+package rpg.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+class QuantileSketchTest {
+  // The buckets grow by 4%, a quantile is known within that
+  private static final double ERROR = 0.04;
+
+  private static QuantileSketch sketch(int from, int to) {
+    QuantileSketch sketch = new QuantileSketch();
+    for (int value = from; value <= to; ++value) {
+      sketch.add(value);
+    }
+    return sketch;
+  }
+
+  @Test
+  void quantilesAreWithinTheBucketError() {
+    QuantileSketch sketch = sketch(1, 10_000);
+    assertEquals(10_000, sketch.count());
+    assertEquals(5_000, sketch.quantile(0.5), 5_000 * ERROR);
+    assertEquals(9_000, sketch.quantile(0.9), 9_000 * ERROR);
+    assertEquals(9_900, sketch.quantile(0.99), 9_900 * ERROR);
+  }
+
+  @Test
+  void emptySketchGivesZero() {
+    assertEquals(0.0, new QuantileSketch().quantile(0.5), 0.0);
+  }
+
+  @Test
+  void mergedHalvesMatchTheWhole() {
+    QuantileSketch whole = sketch(1, 10_000);
+    QuantileSketch merged = sketch(1, 5_000);
+    merged.merge(sketch(5_001, 10_000));
+    assertEquals(whole.count(), merged.count());
+    for (double q = 0.05; q < 1; q += 0.05) {
+      assertEquals(whole.quantile(q), merged.quantile(q), 0.0);
+    }
+  }
+
+  @Test
+  void readGivesTheWrittenSketch() throws IOException {
+    QuantileSketch sketch = sketch(1, 1_000);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    sketch.write(new DataOutputStream(bytes));
+    QuantileSketch read =
+        QuantileSketch.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(sketch.count(), read.count());
+    assertEquals(sketch.quantile(0.5), read.quantile(0.5), 0.0);
+    assertEquals(sketch.quantile(0.99), read.quantile(0.99), 0.0);
+  }
+}